@@ -0,0 +1,84 @@
+package app;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of variable and array values, by slot of an ExpressionService's symbol
+ * table. Every change made through the service publishes a new snapshot with a higher
+ * version; snapshots already handed out never change, so any number of threads can
+ * evaluate against one without locking. Unchanged arrays are shared between versions.
+ */
+public class BindingSnapshot
+{
+   private final long version;
+   final float[] scalars;
+   final int[][] arrays;
+
+   BindingSnapshot(long version, float[] scalars, int[][] arrays)
+   {
+       this.version = version;
+       this.scalars = scalars;
+       this.arrays = arrays;
+   }
+
+   /**
+    * @return Version of the snapshot, starting at 0 and increasing with every update
+    */
+   public long version()
+   {
+       return version;
+   }
+
+   /**
+    * @return Number of variable slots with a value in this snapshot
+    */
+   public int varCount()
+   {
+       return scalars.length;
+   }
+
+   /**
+    * @return Number of array slots with a value in this snapshot
+    */
+   public int arrayCount()
+   {
+       return arrays.length;
+   }
+
+   /**
+    * @param slot Variable slot
+    * @return Value of the variable
+    */
+   public float getVar(int slot)
+   {
+       return scalars[slot];
+   }
+
+   /**
+    * @param slot Array slot
+    * @return Copy of the values of the array, null if it has none
+    */
+   public int[] getArray(int slot)
+   {
+       return arrays[slot] == null ? null : arrays[slot].clone();
+   }
+
+   /**
+    * Returns a snapshot with at least the given number of slots, the new ones being 0 or
+    * without values. Needed for expressions compiled after this snapshot was made.
+    */
+   BindingSnapshot widen(int varCount, int arrayCount)
+   {
+       if (scalars.length >= varCount && arrays.length >= arrayCount)
+       {
+           return this;
+       }
+       return new BindingSnapshot(version, Arrays.copyOf(scalars, Math.max(varCount, scalars.length)),
+               Arrays.copyOf(arrays, Math.max(arrayCount, arrays.length)));
+   }
+
+   public String toString()
+   {
+       return "v" + version + " " + Arrays.toString(scalars);
+   }
+}
@@ -0,0 +1,94 @@
+package structures;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Stack of primitive char values, backed by a char[] that grows when full. Unlike
+ * Stack&lt;Character&gt; nothing is boxed, and clear() keeps the array so an
+ * instance can be reused without allocating.
+ */
+public class CharStack {
+
+	private char[] items;
+	private int size;
+
+	/**
+	 * Initializes stack to empty
+	 */
+	public CharStack() {
+		this(16);
+	}
+
+	/**
+	 * Initializes stack to empty with room for the given number of items
+	 *
+	 * @param capacity Number of items that can be pushed before the array grows
+	 */
+	public CharStack(int capacity) {
+		items = new char[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Pushes an item onto the top of this stack
+	 *
+	 * @param item Item to be pushed
+	 */
+	public void push(char item) {
+		if (size == items.length) {
+			items = Arrays.copyOf(items, size * 2);
+		}
+		items[size++] = item;
+	}
+
+	/**
+	 * Removes the item at the top of this stack, and returns it
+	 *
+	 * @return Item at top
+	 * @throws NoSuchElementException If stack is empty
+	 */
+	public char pop() throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException("can't pop from an empty stack");
+		}
+		return items[--size];
+	}
+
+	/**
+	 * Returns the item at the top of this stack, without removing it
+	 *
+	 * @return Item at top
+	 * @throws NoSuchElementException If stack is empty
+	 */
+	public char peek() throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException("can't peek into an empty stack");
+		}
+		return items[size - 1];
+	}
+
+	/**
+	 * Tells if stack is empty
+	 *
+	 * @return True if stack is empty, false if not
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of items in this stack
+	 *
+	 * @return Number of items
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Empties the stack, keeping its array for reuse
+	 */
+	public void clear() {
+		size = 0;
+	}
+}
@@ -0,0 +1,299 @@
+package app;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates one compiled expression over many rows of variable values at once. Each
+ * variable is bound to a column (one value per row) and each array either to one int[] per
+ * row or to a single int[] shared by all rows. The postfix program is run instruction by
+ * instruction over a chunk of rows, so every operator is a tight loop over primitive arrays,
+ * and chunks are spread over a fork-join pool.
+ * <p>
+ * Symbols without a binding take their current value from the expression's symbol table
+ * for every row.
+ */
+public class ColumnarEvaluator
+{
+   // rows processed together by one pass over the program
+   static final int CHUNK = 1024;
+
+   // rows handled by one fork-join task
+   static final int TASK_ROWS = 16 * CHUNK;
+
+   private final CompiledExpression expr;
+   private final int rows;
+   private final float[][] columns;
+   private final int[][][] arrayRows;
+   private final int[][] sharedArrays;
+
+   /**
+    * @param expr Expression to evaluate
+    * @param rows Number of rows
+    */
+   public ColumnarEvaluator(CompiledExpression expr, int rows)
+   {
+       this.expr = expr;
+       this.rows = rows;
+       columns = new float[expr.symbols.varCount()][];
+       arrayRows = new int[expr.symbols.arrayCount()][][];
+       sharedArrays = new int[expr.symbols.arrayCount()][];
+   }
+
+   /**
+    * Binds a variable to a column of values.
+    *
+    * @param name Variable name
+    * @param column Value of the variable for each row, at least rows long (kept, not copied)
+    * @throws IllegalArgumentException If the expression has no such variable or the column
+    * is too short
+    */
+   public void bindColumn(String name, float[] column)
+   {
+       int slot = expr.symbols.varSlot(name);
+       if (slot == -1 || slot >= columns.length)
+       {
+           throw new IllegalArgumentException("no variable " + name);
+       }
+       if (column.length < rows)
+       {
+           throw new IllegalArgumentException("column " + name + " has " + column.length + " of " + rows + " rows");
+       }
+       columns[slot] = column;
+   }
+
+   /**
+    * Binds an array to a different set of values for each row.
+    *
+    * @param name Array name
+    * @param perRow Values of the array for each row, at least rows long (kept, not copied)
+    * @throws IllegalArgumentException If the expression has no such array or there are too
+    * few rows
+    */
+   public void bindArrayRows(String name, int[][] perRow)
+   {
+       int slot = arraySlot(name);
+       if (perRow.length < rows)
+       {
+           throw new IllegalArgumentException("array " + name + " has " + perRow.length + " of " + rows + " rows");
+       }
+       arrayRows[slot] = perRow;
+       sharedArrays[slot] = null;
+   }
+
+   /**
+    * Binds an array to the same values for every row.
+    *
+    * @param name Array name
+    * @param values Values of the array (kept, not copied)
+    * @throws IllegalArgumentException If the expression has no such array
+    */
+   public void bindArray(String name, int[] values)
+   {
+       int slot = arraySlot(name);
+       sharedArrays[slot] = values;
+       arrayRows[slot] = null;
+   }
+
+   private int arraySlot(String name)
+   {
+       int slot = expr.symbols.arraySlot(name);
+       if (slot == -1 || slot >= arrayRows.length)
+       {
+           throw new IllegalArgumentException("no array " + name);
+       }
+       return slot;
+   }
+
+   /**
+    * Evaluates every row on the common fork-join pool.
+    *
+    * @param out Result for each row, at least rows long
+    */
+   public void evaluate(float[] out)
+   {
+       evaluate(out, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * Evaluates every row.
+    *
+    * @param out Result for each row, at least rows long
+    * @param pool Pool on which chunks of rows are evaluated
+    */
+   public void evaluate(float[] out, ForkJoinPool pool)
+   {
+       if (out.length < rows)
+       {
+           throw new IllegalArgumentException("out has " + out.length + " of " + rows + " rows");
+       }
+       if (rows <= TASK_ROWS)
+       {
+           evaluateRange(out, 0, rows);
+       }
+       else
+       {
+           pool.invoke(new RowTask(out, 0, rows));
+       }
+   }
+
+   private void evaluateRange(float[] out, int from, int to)
+   {
+       if (expr.code.length == 0)
+       {
+           Arrays.fill(out, from, to, 0);
+           return;
+       }
+       float[][] stack = new float[expr.maxStack + expr.temps][CHUNK];
+       for (int start = from; start < to; start += CHUNK)
+       {
+           int len = Math.min(CHUNK, to - start);
+           evaluateChunk(stack, start, len);
+           System.arraycopy(stack[0], 0, out, start, len);
+       }
+   }
+
+   /**
+    * Runs the program over rows [start, start + len), leaving the results in stack[0].
+    */
+   private void evaluateChunk(float[][] stack, int start, int len)
+   {
+       int[] code = expr.code;
+       int sp = 0;
+       for (int pc = 0; pc < code.length; pc++)
+       {
+           int ins = code[pc];
+           int operand = ins >>> 8;
+           switch (ins & 0xff)
+           {
+           case CompiledExpression.CONST:
+               Arrays.fill(stack[sp++], 0, len, expr.consts[operand]);
+               break;
+           case CompiledExpression.VAR:
+               if (columns[operand] != null)
+               {
+                   System.arraycopy(columns[operand], start, stack[sp++], 0, len);
+               }
+               else
+               {
+                   Arrays.fill(stack[sp++], 0, len, expr.symbols.scalars[operand]);
+               }
+               break;
+           case CompiledExpression.ARRAY:
+           {
+               float[] top = stack[sp - 1];
+               if (arrayRows[operand] != null)
+               {
+                   int[][] perRow = arrayRows[operand];
+                   for (int j = 0; j < len; j++)
+                   {
+                       top[j] = perRow[start + j][(int) top[j]];
+                   }
+               }
+               else
+               {
+                   int[] values = sharedArrays[operand] != null ? sharedArrays[operand]
+                           : expr.symbols.arrays[operand];
+                   for (int j = 0; j < len; j++)
+                   {
+                       top[j] = values[(int) top[j]];
+                   }
+               }
+               break;
+           }
+           case CompiledExpression.ADD:
+           {
+               float[] a = stack[sp - 2], b = stack[--sp];
+               for (int j = 0; j < len; j++)
+               {
+                   a[j] = a[j] + b[j];
+               }
+               break;
+           }
+           case CompiledExpression.SUB:
+           {
+               float[] a = stack[sp - 2], b = stack[--sp];
+               for (int j = 0; j < len; j++)
+               {
+                   a[j] = a[j] - b[j];
+               }
+               break;
+           }
+           case CompiledExpression.MUL:
+           {
+               float[] a = stack[sp - 2], b = stack[--sp];
+               for (int j = 0; j < len; j++)
+               {
+                   a[j] = a[j] * b[j];
+               }
+               break;
+           }
+           case CompiledExpression.DIV:
+           {
+               float[] a = stack[sp - 2], b = stack[--sp];
+               for (int j = 0; j < len; j++)
+               {
+                   a[j] = a[j] / b[j];
+               }
+               break;
+           }
+           case CompiledExpression.ARRAY_AT:
+           {
+               int slot = expr.aux[2 * operand], index = expr.aux[2 * operand + 1];
+               float[] top = stack[sp++];
+               if (arrayRows[slot] != null)
+               {
+                   int[][] perRow = arrayRows[slot];
+                   for (int j = 0; j < len; j++)
+                   {
+                       top[j] = perRow[start + j][index];
+                   }
+               }
+               else
+               {
+                   int[] values = sharedArrays[slot] != null ? sharedArrays[slot]
+                           : expr.symbols.arrays[slot];
+                   Arrays.fill(top, 0, len, values[index]);
+               }
+               break;
+           }
+           case CompiledExpression.TEE:
+               System.arraycopy(stack[sp - 1], 0, stack[expr.maxStack + operand], 0, len);
+               break;
+           case CompiledExpression.LOAD_TEMP:
+               System.arraycopy(stack[expr.maxStack + operand], 0, stack[sp++], 0, len);
+               break;
+           default:
+               throw new IllegalStateException("bad opcode " + (ins & 0xff));
+           }
+       }
+   }
+
+   private class RowTask extends RecursiveAction
+   {
+       private static final long serialVersionUID = 1L;
+       private final float[] out;
+       private final int from, to;
+
+       RowTask(float[] out, int from, int to)
+       {
+           this.out = out;
+           this.from = from;
+           this.to = to;
+       }
+
+       @Override
+       protected void compute()
+       {
+           if (to - from <= TASK_ROWS)
+           {
+               evaluateRange(out, from, to);
+               return;
+           }
+           // split on a chunk boundary
+           int mid = from + ((to - from) / 2 / CHUNK + 1) * CHUNK;
+           invokeAll(new RowTask(out, from, mid), new RowTask(out, mid, to));
+       }
+   }
+}
@@ -0,0 +1,480 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An expression parsed once into a flat postfix program, to be evaluated many times with
+ * different variable values. Precedence and associativity are the same as in
+ * Expression.evaluate: * and / bind tighter than + and -, operators of equal precedence
+ * group left to right, and an array index is truncated to an int.
+ * <p>
+ * Every instruction is one int: the opcode in the low 8 bits and its operand (a constant,
+ * variable or array slot) in the upper 24 bits. Programs rewritten by ExpressionOptimizer
+ * may also read a constant array element (ARRAY_AT, operand = pair in aux) and keep shared
+ * subexpression values in temporaries stored past the top of the operand stack (TEE,
+ * LOAD_TEMP).
+ */
+public class CompiledExpression
+{
+   static final int CONST = 0, VAR = 1, ARRAY = 2, ADD = 3, SUB = 4, MUL = 5, DIV = 6,
+           ARRAY_AT = 7, TEE = 8, LOAD_TEMP = 9;
+
+   private static final String[] OPCODE_NAMES = {
+       "CONST", "VAR", "ARRAY", "ADD", "SUB", "MUL", "DIV", "ARRAY_AT", "TEE", "LOAD_TEMP"
+   };
+
+   // scratch operand stack per thread, grown to the deepest program seen
+   private static final ThreadLocal<float[]> scratch = new ThreadLocal<float[]>();
+
+   final int[] code;
+   final float[] consts;
+   // (array slot, index) pairs read by ARRAY_AT
+   final int[] aux;
+   final SymbolTable symbols;
+   final int maxStack;
+   // temporaries, kept in stack[maxStack .. maxStack + temps)
+   final int temps;
+   private final String source;
+
+   CompiledExpression(String source, int[] code, float[] consts, int[] aux, SymbolTable symbols,
+           int maxStack, int temps)
+   {
+       this.source = source;
+       this.code = code;
+       this.consts = consts;
+       this.aux = aux;
+       this.symbols = symbols;
+       this.maxStack = maxStack;
+       this.temps = temps;
+   }
+
+   /**
+    * Compiles an expression against a table of its own.
+    *
+    * @param exp Expression, using the same syntax as Expression.evaluate
+    * @return The compiled expression
+    * @throws IllegalArgumentException If the expression is malformed
+    */
+   public static CompiledExpression compile(String exp)
+   {
+       return compile(exp, new SymbolTable());
+   }
+
+   /**
+    * Compiles an expression, resolving every name to its slot in the table. Names the table
+    * does not have yet are given new slots. Many expressions can share one table.
+    *
+    * @param exp Expression, using the same syntax as Expression.evaluate
+    * @param symbols Table in which names are resolved
+    * @return The compiled expression
+    * @throws IllegalArgumentException If the expression is malformed
+    */
+   public static CompiledExpression compile(String exp, SymbolTable symbols)
+   {
+       return new Compiler(exp, symbols).compile();
+   }
+
+   /**
+    * @return Table the expression's slots refer to
+    */
+   public SymbolTable symbols()
+   {
+       return symbols;
+   }
+
+   /**
+    * Evaluates the expression with the values currently in its symbol table.
+    *
+    * @return Value of the expression
+    */
+   public float evaluate()
+   {
+       return evaluate(symbols.scalars, symbols.arrays);
+   }
+
+   /**
+    * Returns an equivalent expression with constants folded, exact identities removed,
+    * constant array indices resolved and repeated subexpressions computed once.
+    *
+    * @return The optimized expression
+    * @see ExpressionOptimizer
+    */
+   public CompiledExpression optimize()
+   {
+       return ExpressionOptimizer.optimize(this);
+   }
+
+   /**
+    * Evaluates the expression against primitive bindings. Allocates nothing once the calling
+    * thread's scratch stack is large enough.
+    *
+    * @param scalars Value of each variable, by variable slot
+    * @param arrays Values of each array, by array slot
+    * @return Value of the expression
+    */
+   public float evaluate(float[] scalars, int[][] arrays)
+   {
+       float[] stack = scratch.get();
+       if (stack == null || stack.length < maxStack + temps)
+       {
+           stack = new float[Math.max(maxStack + temps, 16)];
+           scratch.set(stack);
+       }
+       return evaluate(scalars, arrays, stack);
+   }
+
+   /**
+    * Evaluates the expression against primitive bindings using the caller's stack.
+    *
+    * @param scalars Value of each variable, by variable slot
+    * @param arrays Values of each array, by array slot
+    * @param stack Operand stack, at least maxStack() long
+    * @return Value of the expression
+    */
+   public float evaluate(float[] scalars, int[][] arrays, float[] stack)
+   {
+       if (code.length == 0)
+       {
+           return 0;
+       }
+       int sp = 0;
+       for (int pc = 0; pc < code.length; pc++)
+       {
+           int ins = code[pc];
+           switch (ins & 0xff)
+           {
+           case CONST:
+               stack[sp++] = consts[ins >>> 8];
+               break;
+           case VAR:
+               stack[sp++] = scalars[ins >>> 8];
+               break;
+           case ARRAY:
+               stack[sp - 1] = arrays[ins >>> 8][(int) stack[sp - 1]];
+               break;
+           case ADD:
+               sp--;
+               stack[sp - 1] = stack[sp - 1] + stack[sp];
+               break;
+           case SUB:
+               sp--;
+               stack[sp - 1] = stack[sp - 1] - stack[sp];
+               break;
+           case MUL:
+               sp--;
+               stack[sp - 1] = stack[sp - 1] * stack[sp];
+               break;
+           case DIV:
+               sp--;
+               stack[sp - 1] = stack[sp - 1] / stack[sp];
+               break;
+           case ARRAY_AT:
+               stack[sp++] = arrays[aux[2 * (ins >>> 8)]][aux[2 * (ins >>> 8) + 1]];
+               break;
+           case TEE:
+               stack[maxStack + (ins >>> 8)] = stack[sp - 1];
+               break;
+           case LOAD_TEMP:
+               stack[sp++] = stack[maxStack + (ins >>> 8)];
+               break;
+           default:
+               throw new IllegalStateException("bad opcode " + (ins & 0xff));
+           }
+       }
+       return stack[0];
+   }
+
+   /**
+    * Evaluates the expression with values taken from the lists filled by
+    * Expression.makeVariableLists and Expression.loadVariableValues. Copies the values into
+    * fresh slot arrays, so it is meant for one-off use; hot loops should use a SymbolTable.
+    *
+    * @param vars The variables array list, with values for all variables in the expression
+    * @param arrays The arrays array list, with values for all array items
+    * @return Result of evaluation
+    */
+   public float evaluate(ArrayList<Variable> vars, ArrayList<Array> arrays)
+   {
+       float[] scalars = new float[symbols.varCount()];
+       int[][] arrayValues = new int[symbols.arrayCount()][];
+       for (Variable var : vars)
+       {
+           int slot = symbols.varSlot(var.name);
+           if (slot != -1)
+           {
+               scalars[slot] = var.value;
+           }
+       }
+       for (Array arr : arrays)
+       {
+           int slot = symbols.arraySlot(arr.name);
+           if (slot != -1)
+           {
+               arrayValues[slot] = arr.values;
+           }
+       }
+       return evaluate(scalars, arrayValues);
+   }
+
+   /**
+    * @return Length of the stack the program needs, operands and temporaries
+    */
+   public int maxStack()
+   {
+       return maxStack + temps;
+   }
+
+   /**
+    * @return Number of instructions in the program
+    */
+   public int length()
+   {
+       return code.length;
+   }
+
+   /**
+    * Lists the program one instruction per line, for example "VAR a" or "ARRAY_AT A[5]".
+    *
+    * @return The program in readable form
+    */
+   public String disassemble()
+   {
+       StringBuilder out = new StringBuilder();
+       for (int ins : code)
+       {
+           int operand = ins >>> 8;
+           out.append(OPCODE_NAMES[ins & 0xff]);
+           switch (ins & 0xff)
+           {
+           case CONST:
+               out.append(' ').append(consts[operand]);
+               break;
+           case VAR:
+               out.append(' ').append(symbols.varName(operand));
+               break;
+           case ARRAY:
+               out.append(' ').append(symbols.arrayName(operand));
+               break;
+           case ARRAY_AT:
+               out.append(' ').append(symbols.arrayName(aux[2 * operand]))
+                       .append('[').append(aux[2 * operand + 1]).append(']');
+               break;
+           case TEE:
+           case LOAD_TEMP:
+               out.append(" t").append(operand);
+               break;
+           default:
+               break;
+           }
+           out.append('\n');
+       }
+       return out.toString();
+   }
+
+   @Override
+   public String toString()
+   {
+       return source;
+   }
+
+   /**
+    * Shunting-yard translation of the expression text to postfix code.
+    */
+   private static class Compiler
+   {
+       private final String exp;
+       private int[] code = new int[16];
+       private int codeLength;
+       private float[] consts = new float[4];
+       private int constCount;
+       private final HashMap<Integer, Integer> constSlots = new HashMap<Integer, Integer>();
+       private final SymbolTable symbols;
+       // pending operators and open brackets; for '[' the array slot is kept alongside
+       private char[] ops = new char[16];
+       private int[] opSlots = new int[16];
+       private int opCount;
+       private int depth, maxDepth;
+
+       Compiler(String exp, SymbolTable symbols)
+       {
+           this.exp = exp;
+           this.symbols = symbols;
+       }
+
+       CompiledExpression compile()
+       {
+           boolean expectOperand = true;
+           ExpressionLexer lexer = new ExpressionLexer(exp);
+           for (int kind = lexer.next(); kind != ExpressionLexer.EOF; kind = lexer.next())
+           {
+               int i = lexer.start();
+               char ch = lexer.charAt();
+               switch (kind)
+               {
+               case ExpressionLexer.NUMBER:
+               case ExpressionLexer.NAME:
+               case ExpressionLexer.ARRAY:
+                   if (kind == ExpressionLexer.ARRAY && lexer.end() == i)
+                   {
+                       throw error("unexpected character '['", i);
+                   }
+                   if (!expectOperand)
+                   {
+                       throw error("operator expected", i);
+                   }
+                   if (kind == ExpressionLexer.NUMBER)
+                   {
+                       emit(CONST, constant(lexer.number()));
+                   }
+                   else if (kind == ExpressionLexer.ARRAY)
+                   {
+                       pushOp('[', symbols.defineArray(lexer.text()));
+                       continue;
+                   }
+                   else
+                   {
+                       emit(VAR, symbols.defineVar(lexer.text()));
+                   }
+                   expectOperand = false;
+                   break;
+               case ExpressionLexer.OPEN:
+                   if (!expectOperand)
+                   {
+                       throw error("operator expected", i);
+                   }
+                   pushOp('(', 0);
+                   break;
+               case ExpressionLexer.CLOSE:
+               case ExpressionLexer.CLOSE_BRACKET:
+               {
+                   if (expectOperand)
+                   {
+                       throw error("operand expected", i);
+                   }
+                   char open = ch == ')' ? '(' : '[';
+                   while (opCount > 0 && ops[opCount - 1] != '(' && ops[opCount - 1] != '[')
+                   {
+                       emitOperator(ops[--opCount]);
+                   }
+                   if (opCount == 0 || ops[opCount - 1] != open)
+                   {
+                       throw error("unbalanced '" + ch + "'", i);
+                   }
+                   opCount--;
+                   if (open == '[')
+                   {
+                       emit(ARRAY, opSlots[opCount]);
+                   }
+                   break;
+               }
+               case ExpressionLexer.OPERATOR:
+                   if (expectOperand)
+                   {
+                       throw error("operand expected", i);
+                   }
+                   while (opCount > 0 && ops[opCount - 1] != '(' && ops[opCount - 1] != '['
+                           && precedence(ops[opCount - 1]) >= precedence(ch))
+                   {
+                       emitOperator(ops[--opCount]);
+                   }
+                   pushOp(ch, 0);
+                   expectOperand = true;
+                   break;
+               default:
+                   throw error("unexpected character '" + ch + "'", i);
+               }
+           }
+           int n = exp.length();
+           if (expectOperand && codeLength > 0)
+           {
+               throw error("operand expected", n);
+           }
+           while (opCount > 0)
+           {
+               char op = ops[--opCount];
+               if (op == '(' || op == '[')
+               {
+                   throw error("unclosed '" + op + "'", n);
+               }
+               emitOperator(op);
+           }
+           return new CompiledExpression(exp, Arrays.copyOf(code, codeLength),
+                   Arrays.copyOf(consts, constCount), new int[0], symbols, maxDepth, 0);
+       }
+
+       private static int precedence(char op)
+       {
+           return op == '*' || op == '/' ? 2 : 1;
+       }
+
+       private int constant(float value)
+       {
+           Integer index = constSlots.get(Float.floatToIntBits(value));
+           if (index == null)
+           {
+               if (constCount == consts.length)
+               {
+                   consts = Arrays.copyOf(consts, constCount * 2);
+               }
+               index = constCount;
+               consts[constCount++] = value;
+               constSlots.put(Float.floatToIntBits(value), index);
+           }
+           return index;
+       }
+
+       private void pushOp(char op, int slot)
+       {
+           if (opCount == ops.length)
+           {
+               ops = Arrays.copyOf(ops, opCount * 2);
+               opSlots = Arrays.copyOf(opSlots, opCount * 2);
+           }
+           ops[opCount] = op;
+           opSlots[opCount++] = slot;
+       }
+
+       private void emitOperator(char op)
+       {
+           switch (op)
+           {
+           case '+':
+               emit(ADD, 0);
+               break;
+           case '-':
+               emit(SUB, 0);
+               break;
+           case '*':
+               emit(MUL, 0);
+               break;
+           default:
+               emit(DIV, 0);
+               break;
+           }
+       }
+
+       private void emit(int opcode, int operand)
+       {
+           if (codeLength == code.length)
+           {
+               code = Arrays.copyOf(code, codeLength * 2);
+           }
+           code[codeLength++] = operand << 8 | opcode;
+           if (opcode == CONST || opcode == VAR)
+           {
+               maxDepth = Math.max(maxDepth, ++depth);
+           }
+           else if (opcode != ARRAY)
+           {
+               depth--;
+           }
+       }
+
+       private IllegalArgumentException error(String message, int position)
+       {
+           return new IllegalArgumentException(message + " at position " + position + " in \"" + exp + "\"");
+       }
+   }
+}
@@ -2,80 +2,58 @@ package app;
 
 import java.io.*;
 import java.util.*;
+import structures.CharStack;
+import structures.FloatStack;
 import structures.Stack;
 public class Expression
 {
    public static String delims = " \t*+-/()[]";
+
+   //operator and operand stacks reused by each thread's calls to evaluate()
+   private static final ThreadLocal<CharStack> operatorPool = ThreadLocal.withInitial(CharStack::new);
+   private static final ThreadLocal<FloatStack> operandPool = ThreadLocal.withInitial(FloatStack::new);
    
  
 
    // definition of the method makeVariableLists()
    public static void makeVariableLists(String exp, ArrayList<Variable> vars, ArrayList<Array> arrays)
    {
-       //creat a string array and split the exp with the token
-       String[] specialTok = exp.split("[^a-zA-Z\\[]+");
+       //new arrays go to the front of the list, in the order they are first seen
        int index = 0;
-       //iterate over the length of the string array.
-       for (int i = 0; i < specialTok.length; i++)
+       //names already in the lists, so each check is a hash lookup instead of indexOf
+       HashSet<String> varSeen = new HashSet<>();
+       HashSet<String> arrSeen = new HashSet<>();
+       for (Variable v : vars)
+       {
+           varSeen.add(v.name);
+       }
+       for (Array a : arrays)
+       {
+           arrSeen.add(a.name);
+       }
+       //one pass over the tokens of the expession: a name followed by '[' is an array,
+       //any other name is a variable
+       ExpressionLexer lexer = new ExpressionLexer(exp);
+       for (int kind = lexer.next(); kind != ExpressionLexer.EOF; kind = lexer.next())
        {
-           //if the length of the array is greater than 0
-           if (specialTok[i].length() > 0)
+           if (kind == ExpressionLexer.ARRAY)
            {
-               //then, check if the array has "["
-               if (specialTok[i].contains("["))
+               String name = lexer.text();
+               //check if the array is new
+               if (arrSeen.add(name))
                {
-                   //create an object of the StringBuilder
-                   StringBuilder strb = new StringBuilder("");
-                   //iterate over the length of the string array.
-                   for (int j = 0; j < specialTok[i].length(); j++)
-                   {
-                       //then, check if the array has "["
-                       if (specialTok[i].charAt(j) == '[')
-                       {
-                           //create an object for the Array class
-                           Array arrObj = new Array(strb.toString());
-                           //check if ArrayList is empty
-                           if (arrays.isEmpty() || arrays.indexOf(arrObj) == -1)
-                           {
-                               //if yes, then add the array object to the arrayList
-                               arrays.add(index++, arrObj);
-                           }
-                           //set the length of the object of the StringBuilder to 0
-                           strb.setLength(0);
-                       }
-                       //otherwise, append the string of the specialTok at j
-                       //to the StringBuilder
-                       else
-                       {
-                           strb.append(specialTok[i].charAt(j));
-                       }
-                   }
-                   //if the length of the StringBuilder object is > 0
-                   if (strb.length() > 0)
-                   {
-                       //create an object for the Variable class
-                       Variable varObj = new Variable(strb.toString());
-                       //check if ArrayList vars is empty
-                       if (vars.isEmpty() || vars.indexOf(varObj) == -1)
-                       {
-                           //if yes, then add the Variable object to the arrayList vars
-                           vars.add(varObj);
-                       }
-                   }
-
+                   //if yes, then add the array object to the arrayList
+                   arrays.add(index++, new Array(name));
                }
-               //if the array does not has "["
-               else
+           }
+           else if (kind == ExpressionLexer.NAME)
+           {
+               String name = lexer.text();
+               //check if the variable is new
+               if (varSeen.add(name))
                {
-                   //create an object for the Variable class
-                   //and set with specialTok at i
-                   Variable varObj = new Variable(specialTok[i]);
-                   //check if ArrayList vars is empty
-                   if (vars.isEmpty() || vars.indexOf(varObj) == -1)
-                   {
-                       //if yes, then add the Variable object to the arrayList vars
-                       vars.add(varObj);
-                   }
+                   //if yes, then add the Variable object to the arrayList vars
+                   vars.add(new Variable(name));
                }
            }
        }
@@ -103,27 +81,27 @@ for(int f=0; f<10000;f++) {
    public static void loadVariableValues(Scanner sc, ArrayList<Variable> vars,
            ArrayList<Array> arrays) throws IOException
    {
+       //index the lists by name once, instead of an indexOf per line
+       HashMap<String, Variable> varIndex = symbolIndex(vars);
+       HashMap<String, Array> arrIndex = arrayIndex(arrays);
        while (sc.hasNextLine())
        {
            StringTokenizer st = new StringTokenizer(sc.nextLine().trim());
            int numTokens = st.countTokens();
            String tok = st.nextToken();
-           Variable var = new Variable(tok);
-           Array arr = new Array(tok);
-           int vari = vars.indexOf(var);
-           int arri = arrays.indexOf(arr);
-           if (vari == -1 && arri == -1)
+           Variable var = varIndex.get(tok);
+           Array arr = arrIndex.get(tok);
+           if (var == null && arr == null)
            {
                continue;
            }
            int num = Integer.parseInt(st.nextToken());
            if (numTokens == 2)
            { // scalar symbol
-               vars.get(vari).value = num;
+               var.value = num;
            }
            else
            { // array symbol
-               arr = arrays.get(arri);
                arr.values = new int[num];
                // following are (index,val) pairs
                while (st.hasMoreTokens())
@@ -145,10 +123,16 @@ for(int f=0; f<10000;f++) {
    {
        //trim the expession
        exp.trim();
-       //create stack opbjects of Character, float, and tring
-       Stack<Character> operatorStk = new Stack<>();
-       Stack<Float> operandStk = new Stack<>();
+       //take this thread's primitive stacks for operators and operands,
+       //and create the stack for array names
+       CharStack operatorStk = operatorPool.get();
+       FloatStack operandStk = operandPool.get();
+       operatorStk.clear();
+       operandStk.clear();
        Stack<String> arrStk = new Stack<>();
+       //index the variables and arrays by name once for this call
+       HashMap<String, Variable> varIndex = symbolIndex(vars);
+       HashMap<String, Array> arrIndex = arrayIndex(arrays);
 
        StringBuffer str_buf = new StringBuffer("");
        float operand = 0;
@@ -204,18 +188,13 @@ for(int f=0; f<10000;f++) {
                    operatorStk.pop();
                }
                //get the index value of the operandStk first element
-               int idx = operandStk.pop().intValue();
-               //create an object of the array iterator
-               Iterator<Array> itr = arrays.iterator();
-               while (itr.hasNext())
+               int idx = (int) operandStk.pop();
+               //look up the array by name
+               Array arr = arrIndex.get(arrStk.peek());
+               if (arr != null)
                {
-                   Array arr = itr.next();
-                   if (arr.name.equals(arrStk.peek()))
-                   {
-                       operandStk.push((float) arr.values[idx]);
-                       arrStk.pop();
-                       break;
-                   }
+                   operandStk.push((float) arr.values[idx]);
+                   arrStk.pop();
                }
 
                break;
@@ -253,10 +232,8 @@ for(int f=0; f<10000;f++) {
                                || exp.charAt(i + 1) == ']'
                                || exp.charAt(i + 1) == ' ')
                        {
-                           //create an object for the Variable var
-                           Variable var = new Variable(str_buf.toString());
-                           int idxVar = vars.indexOf(var);
-                           operand = vars.get(idxVar).value;
+                           //look up the Variable var
+                           operand = varIndex.get(str_buf.toString()).value;
                            // Add operand to operandStk
                            operandStk.push(operand);
                            str_buf.setLength(0);
@@ -268,9 +245,7 @@ for(int f=0; f<10000;f++) {
                    {
                        // the last variable of the expession
                        // convert to integer value;
-                       Variable var = new Variable(str_buf.toString());
-                       int varIndex = vars.indexOf(var);
-                       operand = vars.get(varIndex).value;
+                       operand = varIndex.get(str_buf.toString()).value;
                        // Add operand to operandStk
                        operandStk.push(operand);
                        // System.out.println("variable=" + str_buf.toString()
@@ -315,7 +290,7 @@ for(int f=0; f<10000;f++) {
            }
            i++;
        }
-       Float result = Float.valueOf(0);
+       float result = 0;
        if (i == exp.length())
        {
            while (operatorStk.size() > 0 && operandStk.size() > 1)
@@ -328,19 +303,51 @@ for(int f=0; f<10000;f++) {
                result = operandStk.pop();
            }
        }
-       return result.floatValue();
+       return result;
+   }
+
+   // definition of the method compile()
+   // Parses the expession once into a postfix program that can be evaluated
+   // many times with different variable values.
+   public static CompiledExpression compile(String exp)
+   {
+       return CompiledExpression.compile(exp);
+   }
+
+   //definition of the method symbolIndex()
+   //maps each variable name to its first entry in the list, as indexOf would find it
+   private static HashMap<String, Variable> symbolIndex(ArrayList<Variable> vars)
+   {
+       HashMap<String, Variable> index = new HashMap<>(vars.size() * 2);
+       for (Variable v : vars)
+       {
+           index.putIfAbsent(v.name, v);
+       }
+       return index;
+   }
+
+   //definition of the method arrayIndex()
+   //maps each array name to its first entry in the list
+   private static HashMap<String, Array> arrayIndex(ArrayList<Array> arrays)
+   {
+       HashMap<String, Array> index = new HashMap<>(arrays.size() * 2);
+       for (Array a : arrays)
+       {
+           index.putIfAbsent(a.name, a);
+       }
+       return index;
    }
 
    //definition of the method findOperationResult()
-   private static void findOperationResult(Stack<Character> operatorStk,
-           Stack<Float> operandStk)
+   private static void findOperationResult(CharStack operatorStk,
+           FloatStack operandStk)
    {
-       Float reuslt = Float.valueOf(0);
+       float reuslt = 0;
        if (operatorStk.size() > 0 && operandStk.size() > 1)
        {
            //get the two operands
-           Float operand1 = operandStk.pop().floatValue();
-           Float operand2 = operandStk.pop().floatValue();
+           float operand1 = operandStk.pop();
+           float operand2 = operandStk.pop();
            //perform the operations
            switch (operatorStk.pop())
            {
@@ -364,7 +371,7 @@ for(int f=0; f<10000;f++) {
        {
            reuslt = operandStk.pop();
            //push the value intp operand stack
-           operandStk.push(operandStk.pop().floatValue());
+           operandStk.push(operandStk.pop());
        }
 
    }
@@ -0,0 +1,163 @@
+package app;
+
+/**
+ * Splits an expression into tokens in a single pass over its characters, without regular
+ * expressions or intermediate strings. Used both to find the symbols of an expression
+ * (Expression.makeVariableLists) and to compile it (CompiledExpression).
+ * <p>
+ * Usage: call next() until it returns EOF; after each call start() and end() delimit the
+ * token in the expression. An ARRAY token is a name followed directly by '['; its text is
+ * the name alone, possibly empty for a '[' with no name before it.
+ */
+public class ExpressionLexer
+{
+   public static final int EOF = 0;
+   // run of digits
+   public static final int NUMBER = 1;
+   // run of letters not followed by '['
+   public static final int NAME = 2;
+   // run of letters (maybe none) followed by '['
+   public static final int ARRAY = 3;
+   // '(' ')' ']'
+   public static final int OPEN = 4, CLOSE = 5, CLOSE_BRACKET = 6;
+   // + - * /
+   public static final int OPERATOR = 7;
+   // any other character
+   public static final int OTHER = 8;
+
+   private final String exp;
+   private final int length;
+   private int pos;
+   private int start, end;
+
+   /**
+    * @param exp Expression to split
+    */
+   public ExpressionLexer(String exp)
+   {
+       this.exp = exp;
+       this.length = exp.length();
+   }
+
+   /**
+    * Moves to the next token, skipping blanks and tabs.
+    *
+    * @return Kind of the token, EOF at the end of the expression
+    */
+   public int next()
+   {
+       while (pos < length && (exp.charAt(pos) == ' ' || exp.charAt(pos) == '\t'))
+       {
+           pos++;
+       }
+       start = pos;
+       if (pos == length)
+       {
+           end = pos;
+           return EOF;
+       }
+       char ch = exp.charAt(pos);
+       if (isLetter(ch) || ch == '[')
+       {
+           while (pos < length && isLetter(exp.charAt(pos)))
+           {
+               pos++;
+           }
+           end = pos;
+           if (pos < length && exp.charAt(pos) == '[')
+           {
+               pos++;
+               return ARRAY;
+           }
+           return NAME;
+       }
+       if (isDigit(ch))
+       {
+           while (pos < length && isDigit(exp.charAt(pos)))
+           {
+               pos++;
+           }
+           end = pos;
+           return NUMBER;
+       }
+       end = ++pos;
+       switch (ch)
+       {
+       case '(':
+           return OPEN;
+       case ')':
+           return CLOSE;
+       case ']':
+           return CLOSE_BRACKET;
+       case '+':
+       case '-':
+       case '*':
+       case '/':
+           return OPERATOR;
+       default:
+           return OTHER;
+       }
+   }
+
+   /**
+    * @return Index of the first character of the current token
+    */
+   public int start()
+   {
+       return start;
+   }
+
+   /**
+    * @return Index past the last character of the current token (before the '[' of an ARRAY)
+    */
+   public int end()
+   {
+       return end;
+   }
+
+   /**
+    * @return Text of the current token
+    */
+   public String text()
+   {
+       return exp.substring(start, end);
+   }
+
+   /**
+    * @return First character of the current token
+    */
+   public char charAt()
+   {
+       return exp.charAt(start);
+   }
+
+   /**
+    * Value of the current NUMBER token, rounded to the nearest float as Float.parseFloat
+    * would.
+    *
+    * @return Value of the number
+    */
+   public float number()
+   {
+       if (end - start > 18)
+       {
+           return Float.parseFloat(text());
+       }
+       long value = 0;
+       for (int i = start; i < end; i++)
+       {
+           value = value * 10 + (exp.charAt(i) - '0');
+       }
+       return (float) value;
+   }
+
+   static boolean isLetter(char ch)
+   {
+       return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+   }
+
+   static boolean isDigit(char ch)
+   {
+       return ch >= '0' && ch <= '9';
+   }
+}
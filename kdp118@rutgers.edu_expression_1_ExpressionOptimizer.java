@@ -0,0 +1,317 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Rewrites a compiled expression into an equivalent, shorter program:
+ * <ul>
+ * <li>operators on constants are folded, with the same float arithmetic as evaluation,</li>
+ * <li>x*1, 1*x, x/1 and x-0 become x; other identities such as x+0 or x*0 are left alone
+ * because they change the result for -0, infinities or NaN,</li>
+ * <li>array reads with a constant index become a single ARRAY_AT instruction,</li>
+ * <li>a subexpression that occurs more than once is computed once, saved in a temporary
+ * and reloaded.</li>
+ * </ul>
+ * The optimized program returns exactly the same value as the original for every binding.
+ * Use CompiledExpression.disassemble to see the result.
+ */
+public class ExpressionOptimizer
+{
+   /**
+    * Node of the expression tree rebuilt from the postfix program. Nodes are hash-consed,
+    * so structurally equal subexpressions are the same node and share an id.
+    */
+   private static class Node
+   {
+       final int id;
+       final int op;
+       // VAR/ARRAY: slot; ARRAY_AT: slot
+       final int operand;
+       // CONST: value; ARRAY_AT: index
+       final float value;
+       final Node left, right;
+
+       Node(int id, int op, int operand, float value, Node left, Node right)
+       {
+           this.id = id;
+           this.op = op;
+           this.operand = operand;
+           this.value = value;
+           this.left = left;
+           this.right = right;
+       }
+
+       boolean isConst(float v)
+       {
+           return op == CompiledExpression.CONST
+                   && Float.floatToIntBits(value) == Float.floatToIntBits(v);
+       }
+   }
+
+   private final HashMap<String, Node> nodes = new HashMap<String, Node>();
+   private final ArrayList<Node> byId = new ArrayList<Node>();
+
+   private ExpressionOptimizer()
+   {
+   }
+
+   /**
+    * Optimizes a compiled expression.
+    *
+    * @param expr Expression to optimize
+    * @return The optimized expression, sharing expr's symbol table
+    */
+   public static CompiledExpression optimize(CompiledExpression expr)
+   {
+       if (expr.code.length == 0)
+       {
+           return expr;
+       }
+       ExpressionOptimizer optimizer = new ExpressionOptimizer();
+       Node root = optimizer.build(expr);
+       return optimizer.emit(expr, root);
+   }
+
+   private Node node(int op, int operand, float value, Node left, Node right)
+   {
+       String key = op + ":" + operand + ":" + Float.floatToIntBits(value) + ":"
+               + (left == null ? -1 : left.id) + ":" + (right == null ? -1 : right.id);
+       Node n = nodes.get(key);
+       if (n == null)
+       {
+           n = new Node(byId.size(), op, operand, value, left, right);
+           nodes.put(key, n);
+           byId.add(n);
+       }
+       return n;
+   }
+
+   /**
+    * Rebuilds the tree from postfix code, folding and simplifying as nodes are made.
+    */
+   private Node build(CompiledExpression expr)
+   {
+       Node[] stack = new Node[expr.maxStack];
+       Node[] temps = new Node[expr.temps];
+       int sp = 0;
+       for (int ins : expr.code)
+       {
+           int operand = ins >>> 8;
+           switch (ins & 0xff)
+           {
+           case CompiledExpression.CONST:
+               stack[sp++] = node(CompiledExpression.CONST, 0, expr.consts[operand], null, null);
+               break;
+           case CompiledExpression.VAR:
+               stack[sp++] = node(CompiledExpression.VAR, operand, 0, null, null);
+               break;
+           case CompiledExpression.ARRAY:
+               stack[sp - 1] = array(operand, stack[sp - 1]);
+               break;
+           case CompiledExpression.ARRAY_AT:
+               stack[sp++] = node(CompiledExpression.ARRAY_AT, expr.aux[2 * operand],
+                       expr.aux[2 * operand + 1], null, null);
+               break;
+           case CompiledExpression.TEE:
+               temps[operand] = stack[sp - 1];
+               break;
+           case CompiledExpression.LOAD_TEMP:
+               stack[sp++] = temps[operand];
+               break;
+           default:
+               sp--;
+               stack[sp - 1] = binary(ins & 0xff, stack[sp - 1], stack[sp]);
+               break;
+           }
+       }
+       return stack[0];
+   }
+
+   private Node array(int slot, Node index)
+   {
+       if (index.op == CompiledExpression.CONST)
+       {
+           // same truncation evaluation applies to the index
+           return node(CompiledExpression.ARRAY_AT, slot, (int) index.value, null, null);
+       }
+       return node(CompiledExpression.ARRAY, slot, 0, index, null);
+   }
+
+   private Node binary(int op, Node a, Node b)
+   {
+       if (a.op == CompiledExpression.CONST && b.op == CompiledExpression.CONST)
+       {
+           float v;
+           switch (op)
+           {
+           case CompiledExpression.ADD:
+               v = a.value + b.value;
+               break;
+           case CompiledExpression.SUB:
+               v = a.value - b.value;
+               break;
+           case CompiledExpression.MUL:
+               v = a.value * b.value;
+               break;
+           default:
+               v = a.value / b.value;
+               break;
+           }
+           return node(CompiledExpression.CONST, 0, v, null, null);
+       }
+       if (op == CompiledExpression.MUL && b.isConst(1f))
+       {
+           return a;
+       }
+       if (op == CompiledExpression.MUL && a.isConst(1f))
+       {
+           return b;
+       }
+       if (op == CompiledExpression.DIV && b.isConst(1f))
+       {
+           return a;
+       }
+       if (op == CompiledExpression.SUB && b.isConst(0f))
+       {
+           return a;
+       }
+       return node(op, 0, 0, a, b);
+   }
+
+   /**
+    * Emits postfix code for the tree. Both passes walk the tree in evaluation order with an
+    * explicit stack, since machine-generated expressions can nest very deeply.
+    */
+   private CompiledExpression emit(CompiledExpression expr, Node root)
+   {
+       int n = byId.size();
+       // occurrences of each subexpression, not counting those inside a repeat
+       int[] uses = new int[n];
+       Node[] work = new Node[16];
+       int top = 0;
+       work[top++] = root;
+       while (top > 0)
+       {
+           Node node = work[--top];
+           if (uses[node.id]++ > 0 || node.left == null)
+           {
+               continue;
+           }
+           if (top + 2 > work.length)
+           {
+               work = Arrays.copyOf(work, work.length * 2);
+           }
+           if (node.right != null)
+           {
+               work[top++] = node.right;
+           }
+           work[top++] = node.left;
+       }
+
+       int[] code = new int[16];
+       int length = 0, depth = 0, maxDepth = 0, temps = 0;
+       int[] temp = new int[n];
+       Arrays.fill(temp, -1);
+       HashMap<Integer, Integer> constIndex = new HashMap<Integer, Integer>();
+       float[] consts = new float[4];
+       HashMap<Long, Integer> pairIndex = new HashMap<Long, Integer>();
+       int[] aux = new int[8];
+       boolean[] expanded = new boolean[work.length];
+       top = 0;
+       work[top] = root;
+       expanded[top++] = false;
+       while (top > 0)
+       {
+           Node node = work[--top];
+           boolean done = expanded[top];
+           if (code.length < length + 2)
+           {
+               code = Arrays.copyOf(code, code.length * 2);
+           }
+           if (!done && temp[node.id] != -1)
+           {
+               code[length++] = temp[node.id] << 8 | CompiledExpression.LOAD_TEMP;
+               maxDepth = Math.max(maxDepth, ++depth);
+               continue;
+           }
+           if (!done && node.left != null)
+           {
+               if (top + 3 > work.length)
+               {
+                   work = Arrays.copyOf(work, work.length * 2);
+                   expanded = Arrays.copyOf(expanded, work.length);
+               }
+               work[top] = node;
+               expanded[top++] = true;
+               if (node.right != null)
+               {
+                   work[top] = node.right;
+                   expanded[top++] = false;
+               }
+               work[top] = node.left;
+               expanded[top++] = false;
+               continue;
+           }
+           switch (node.op)
+           {
+           case CompiledExpression.CONST:
+           {
+               Integer index = constIndex.get(Float.floatToIntBits(node.value));
+               if (index == null)
+               {
+                   index = constIndex.size();
+                   constIndex.put(Float.floatToIntBits(node.value), index);
+                   if (index == consts.length)
+                   {
+                       consts = Arrays.copyOf(consts, index * 2);
+                   }
+                   consts[index] = node.value;
+               }
+               code[length++] = index << 8 | CompiledExpression.CONST;
+               maxDepth = Math.max(maxDepth, ++depth);
+               break;
+           }
+           case CompiledExpression.VAR:
+               code[length++] = node.operand << 8 | CompiledExpression.VAR;
+               maxDepth = Math.max(maxDepth, ++depth);
+               break;
+           case CompiledExpression.ARRAY_AT:
+           {
+               long key = (long) node.operand << 32 | ((int) node.value & 0xffffffffL);
+               Integer pair = pairIndex.get(key);
+               if (pair == null)
+               {
+                   pair = pairIndex.size();
+                   pairIndex.put(key, pair);
+                   if (2 * pair + 2 > aux.length)
+                   {
+                       aux = Arrays.copyOf(aux, aux.length * 2);
+                   }
+                   aux[2 * pair] = node.operand;
+                   aux[2 * pair + 1] = (int) node.value;
+               }
+               code[length++] = pair << 8 | CompiledExpression.ARRAY_AT;
+               maxDepth = Math.max(maxDepth, ++depth);
+               break;
+           }
+           case CompiledExpression.ARRAY:
+               code[length++] = node.operand << 8 | CompiledExpression.ARRAY;
+               break;
+           default:
+               code[length++] = node.op;
+               depth--;
+               break;
+           }
+           if (uses[node.id] > 1 && node.left != null)
+           {
+               temp[node.id] = temps;
+               code[length++] = temps++ << 8 | CompiledExpression.TEE;
+           }
+       }
+       return new CompiledExpression(expr.toString(), Arrays.copyOf(code, length),
+               Arrays.copyOf(consts, constIndex.size()), Arrays.copyOf(aux, 2 * pairIndex.size()),
+               expr.symbols, maxDepth, temps);
+   }
+}
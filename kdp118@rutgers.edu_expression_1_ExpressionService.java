@@ -0,0 +1,278 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Evaluates compiled expressions on many threads while their bindings are being updated.
+ * Values live in immutable BindingSnapshots; an update builds a new snapshot and swaps it in
+ * atomically, so an evaluation sees either all of an update or none of it. Reading a
+ * snapshot and evaluating against it takes no lock, and every thread evaluates on its own
+ * scratch stack. Only compiling and updating, which change the shared symbol table, are
+ * serialized.
+ * <p>
+ * Jobs run on the executor given to the constructor. Any executor will do, for instance a
+ * fixed pool sized to the number of cores or, on newer JDKs, a virtual-thread-per-task
+ * executor.
+ */
+public class ExpressionService
+{
+   // expressions evaluated by one task of evaluateAll
+   static final int BATCH = 256;
+
+   private final SymbolTable symbols = new SymbolTable();
+   private final AtomicReference<BindingSnapshot> current = new AtomicReference<BindingSnapshot>(
+           new BindingSnapshot(0, new float[0], new int[0][]));
+   private final ExecutorService executor;
+
+   // slot counts of the table, readable without the lock
+   private volatile int varCount, arrayCount;
+
+   /**
+    * Creates a service that runs jobs on the common fork-join pool.
+    */
+   public ExpressionService()
+   {
+       this(ForkJoinPool.commonPool());
+   }
+
+   /**
+    * @param executor Executor on which submitted jobs run
+    */
+   public ExpressionService(ExecutorService executor)
+   {
+       this.executor = executor;
+   }
+
+   /**
+    * Compiles an expression against the service's symbol table. New names get slots with
+    * value 0 (variables) or no values (arrays), which are in the latest snapshot from then on.
+    *
+    * @param exp Expression, using the same syntax as Expression.evaluate
+    * @return The compiled expression
+    * @throws IllegalArgumentException If the expression is malformed
+    */
+   public synchronized CompiledExpression compile(String exp)
+   {
+       CompiledExpression expr = CompiledExpression.compile(exp, symbols);
+       varCount = symbols.varCount();
+       arrayCount = symbols.arrayCount();
+       // publish the new slots now, so evaluating against the latest snapshot never widens
+       current.set(current.get().widen(varCount, arrayCount));
+       return expr;
+   }
+
+   /**
+    * @param name Variable name
+    * @return Slot of the variable, -1 if it has none
+    */
+   public synchronized int varSlot(String name)
+   {
+       return symbols.varSlot(name);
+   }
+
+   /**
+    * @param name Array name
+    * @return Slot of the array, -1 if it has none
+    */
+   public synchronized int arraySlot(String name)
+   {
+       return symbols.arraySlot(name);
+   }
+
+   /**
+    * @return The latest snapshot
+    */
+   public BindingSnapshot snapshot()
+   {
+       return current.get();
+   }
+
+   /**
+    * Publishes a new snapshot with the given values changed. Arrays are copied, so the
+    * caller may go on changing them.
+    *
+    * @param vars New values of variables, by name (may be null)
+    * @param arrays New values of arrays, by name (may be null)
+    * @return The new snapshot
+    */
+   public synchronized BindingSnapshot update(Map<String, Float> vars, Map<String, int[]> arrays)
+   {
+       if (vars != null)
+       {
+           for (Map.Entry<String, Float> e : vars.entrySet())
+           {
+               symbols.defineVar(e.getKey());
+           }
+       }
+       if (arrays != null)
+       {
+           for (Map.Entry<String, int[]> e : arrays.entrySet())
+           {
+               symbols.defineArray(e.getKey());
+           }
+       }
+       BindingSnapshot old = current.get().widen(symbols.varCount(), symbols.arrayCount());
+       float[] newScalars = old.scalars.clone();
+       int[][] newArrays = old.arrays.clone();
+       if (vars != null)
+       {
+           for (Map.Entry<String, Float> e : vars.entrySet())
+           {
+               newScalars[symbols.varSlot(e.getKey())] = e.getValue();
+           }
+       }
+       if (arrays != null)
+       {
+           for (Map.Entry<String, int[]> e : arrays.entrySet())
+           {
+               int[] values = e.getValue();
+               newArrays[symbols.arraySlot(e.getKey())] = values == null ? null : values.clone();
+           }
+       }
+       return publish(newScalars, newArrays);
+   }
+
+   /**
+    * Publishes a new snapshot with the values of every entry of the lists, as loaded by
+    * Expression.loadVariableValues.
+    *
+    * @param vars The variables array list
+    * @param arrays The arrays array list
+    * @return The new snapshot
+    */
+   public synchronized BindingSnapshot load(ArrayList<Variable> vars, ArrayList<Array> arrays)
+   {
+       for (Variable var : vars)
+       {
+           symbols.defineVar(var.name);
+       }
+       for (Array arr : arrays)
+       {
+           symbols.defineArray(arr.name);
+       }
+       BindingSnapshot old = current.get().widen(symbols.varCount(), symbols.arrayCount());
+       float[] newScalars = old.scalars.clone();
+       int[][] newArrays = old.arrays.clone();
+       for (Variable var : vars)
+       {
+           newScalars[symbols.varSlot(var.name)] = var.value;
+       }
+       for (Array arr : arrays)
+       {
+           newArrays[symbols.arraySlot(arr.name)] = arr.values == null ? null : arr.values.clone();
+       }
+       return publish(newScalars, newArrays);
+   }
+
+   private BindingSnapshot publish(float[] scalars, int[][] arrays)
+   {
+       varCount = symbols.varCount();
+       arrayCount = symbols.arrayCount();
+       BindingSnapshot next = new BindingSnapshot(current.get().version() + 1, scalars, arrays);
+       current.set(next);
+       return next;
+   }
+
+   /**
+    * Evaluates an expression on the calling thread.
+    *
+    * @param expr Expression compiled by this service
+    * @param snapshot Values to evaluate with
+    * @return Value of the expression
+    * @throws IllegalArgumentException If the expression was not compiled by this service
+    */
+   public float evaluate(CompiledExpression expr, BindingSnapshot snapshot)
+   {
+       if (expr.symbols != symbols)
+       {
+           throw new IllegalArgumentException("expression not compiled by this service: " + expr);
+       }
+       snapshot = snapshot.widen(varCount, arrayCount);
+       return expr.evaluate(snapshot.scalars, snapshot.arrays);
+   }
+
+   /**
+    * Evaluates an expression on the executor with the latest snapshot at the time of the call.
+    *
+    * @param expr Expression compiled by this service
+    * @return Pending value of the expression
+    */
+   public Future<Float> submit(CompiledExpression expr)
+   {
+       return submit(expr, current.get());
+   }
+
+   /**
+    * Evaluates an expression on the executor.
+    *
+    * @param expr Expression compiled by this service
+    * @param snapshot Values to evaluate with
+    * @return Pending value of the expression
+    */
+   public Future<Float> submit(final CompiledExpression expr, final BindingSnapshot snapshot)
+   {
+       return executor.submit(new Callable<Float>()
+       {
+           public Float call()
+           {
+               return evaluate(expr, snapshot);
+           }
+       });
+   }
+
+   /**
+    * Evaluates many expressions against one snapshot, in batches spread over the executor,
+    * and waits for all of them.
+    *
+    * @param exprs Expressions compiled by this service
+    * @param snapshot Values to evaluate with
+    * @return Value of each expression, in list order
+    * @throws InterruptedException If interrupted while waiting
+    */
+   public float[] evaluateAll(final List<CompiledExpression> exprs, BindingSnapshot snapshot)
+           throws InterruptedException
+   {
+       final BindingSnapshot values = snapshot.widen(varCount, arrayCount);
+       final float[] out = new float[exprs.size()];
+       ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+       for (int start = 0; start < out.length; start += BATCH)
+       {
+           final int from = start, to = Math.min(out.length, start + BATCH);
+           tasks.add(new Callable<Void>()
+           {
+               public Void call()
+               {
+                   for (int i = from; i < to; i++)
+                   {
+                       out[i] = evaluate(exprs.get(i), values);
+                   }
+                   return null;
+               }
+           });
+       }
+       for (Future<Void> f : executor.invokeAll(tasks))
+       {
+           try
+           {
+               f.get();
+           }
+           catch (ExecutionException e)
+           {
+               if (e.getCause() instanceof RuntimeException)
+               {
+                   throw (RuntimeException) e.getCause();
+               }
+               throw new IllegalStateException(e.getCause());
+           }
+       }
+       return out;
+   }
+}
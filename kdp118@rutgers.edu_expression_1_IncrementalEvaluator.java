@@ -0,0 +1,328 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Keeps the values of many formulas up to date as their variables change, re-evaluating
+ * only the formulas that read something that changed. Each variable, array and array element
+ * maps to the formulas that depend on it: a read with a constant index depends on that one
+ * element, a read with a computed index on the whole array. Changes mark formulas dirty and
+ * recompute() re-evaluates just those, so the cost of a tick is proportional to the change
+ * and not to the number of formulas.
+ */
+public class IncrementalEvaluator
+{
+   /**
+    * Growable list of formula ids
+    */
+   private static class Deps
+   {
+       int[] ids = new int[4];
+       int size;
+
+       void add(int id)
+       {
+           if (size == ids.length)
+           {
+               ids = Arrays.copyOf(ids, size * 2);
+           }
+           ids[size++] = id;
+       }
+   }
+
+   private final SymbolTable symbols = new SymbolTable();
+   private final ArrayList<CompiledExpression> formulas = new ArrayList<CompiledExpression>();
+   private float[] values = new float[16];
+
+   // formulas reading each variable slot
+   private final ArrayList<Deps> varDeps = new ArrayList<Deps>();
+   // formulas reading each array slot with a computed index
+   private final ArrayList<Deps> arrayDeps = new ArrayList<Deps>();
+   // formulas reading one element, keyed by array slot << 32 | index
+   private final HashMap<Long, Deps> elementDeps = new HashMap<Long, Deps>();
+   // element keys read with a constant index, by array slot
+   private final ArrayList<HashSet<Long>> elementKeys = new ArrayList<HashSet<Long>>();
+
+   private boolean[] dirty = new boolean[16];
+   private int[] dirtyList = new int[16];
+   private int dirtyCount;
+
+   /**
+    * Adds a formula and evaluates it with the current values.
+    *
+    * @param exp Formula, using the same syntax as Expression.evaluate
+    * @return Id of the formula
+    * @throws IllegalArgumentException If the formula is malformed
+    */
+   public int add(String exp)
+   {
+       CompiledExpression expr = CompiledExpression.compile(exp, symbols).optimize();
+       int id = formulas.size();
+       formulas.add(expr);
+       if (id == values.length)
+       {
+           values = Arrays.copyOf(values, id * 2);
+           dirty = Arrays.copyOf(dirty, id * 2);
+       }
+       ArrayList<Variable> vars = new ArrayList<Variable>();
+       ArrayList<Array> arrays = new ArrayList<Array>();
+       Expression.makeVariableLists(exp, vars, arrays);
+       for (Variable var : vars)
+       {
+           deps(varDeps, symbols.varSlot(var.name)).add(id);
+       }
+       HashSet<Integer> wholeArrays = new HashSet<Integer>();
+       HashSet<Long> elements = new HashSet<Long>();
+       for (int ins : expr.code)
+       {
+           if ((ins & 0xff) == CompiledExpression.ARRAY)
+           {
+               wholeArrays.add(ins >>> 8);
+           }
+           else if ((ins & 0xff) == CompiledExpression.ARRAY_AT)
+           {
+               int pair = ins >>> 8;
+               elements.add(key(expr.aux[2 * pair], expr.aux[2 * pair + 1]));
+           }
+       }
+       for (Array arr : arrays)
+       {
+           int slot = symbols.arraySlot(arr.name);
+           deps(arrayDeps, slot);
+           while (elementKeys.size() <= slot)
+           {
+               elementKeys.add(new HashSet<Long>());
+           }
+           if (wholeArrays.contains(slot))
+           {
+               arrayDeps.get(slot).add(id);
+           }
+       }
+       for (Long k : elements)
+       {
+           if (!wholeArrays.contains((int) (k >>> 32)))
+           {
+               Deps d = elementDeps.get(k);
+               if (d == null)
+               {
+                   d = new Deps();
+                   elementDeps.put(k, d);
+                   elementKeys.get((int) (k >>> 32)).add(k);
+               }
+               d.add(id);
+           }
+       }
+       values[id] = evaluate(expr);
+       return id;
+   }
+
+   private static Deps deps(ArrayList<Deps> list, int slot)
+   {
+       while (list.size() <= slot)
+       {
+           list.add(new Deps());
+       }
+       return list.get(slot);
+   }
+
+   private static long key(int slot, int index)
+   {
+       return (long) slot << 32 | (index & 0xffffffffL);
+   }
+
+   /**
+    * @return Number of formulas
+    */
+   public int size()
+   {
+       return formulas.size();
+   }
+
+   /**
+    * Value of a formula as of the last recompute (or its add).
+    *
+    * @param id Formula id
+    * @return Value of the formula, NaN if it could not be evaluated (e.g. an array it reads
+    * has no values yet or an index is out of range)
+    */
+   public float value(int id)
+   {
+       if (id < 0 || id >= formulas.size())
+       {
+           throw new IndexOutOfBoundsException("formula " + id + " of " + formulas.size());
+       }
+       return values[id];
+   }
+
+   /**
+    * Sets a variable, marking the formulas that read it if the value changed.
+    *
+    * @param name Variable name
+    * @param value New value
+    */
+   public void setVar(String name, float value)
+   {
+       int slot = symbols.defineVar(name);
+       if (Float.floatToIntBits(symbols.scalars[slot]) != Float.floatToIntBits(value))
+       {
+           symbols.scalars[slot] = value;
+           mark(deps(varDeps, slot));
+       }
+   }
+
+   /**
+    * Replaces the values of an array, marking the formulas that read an element that changed.
+    *
+    * @param name Array name
+    * @param values New values of the array (kept, not copied)
+    */
+   public void setArray(String name, int[] values)
+   {
+       int slot = symbols.defineArray(name);
+       int[] old = symbols.arrays[slot];
+       symbols.arrays[slot] = values;
+       if (old == values)
+       {
+           // changed in place: all bets are off
+           markArray(slot);
+           return;
+       }
+       int oldLength = old == null ? -1 : old.length;
+       int newLength = values == null ? -1 : values.length;
+       if (oldLength != newLength)
+       {
+           markArray(slot);
+           return;
+       }
+       if (slot < arrayDeps.size() && !Arrays.equals(old, values))
+       {
+           mark(arrayDeps.get(slot));
+           for (Long k : elementKeys.get(slot))
+           {
+               int index = (int) (long) k;
+               if (index < 0 || index >= newLength || old[index] != values[index])
+               {
+                   mark(elementDeps.get(k));
+               }
+           }
+       }
+   }
+
+   /**
+    * Sets one element of an array, marking the formulas that read it if it changed.
+    *
+    * @param name Array name
+    * @param index Index of the element
+    * @param value New value
+    * @throws IllegalArgumentException If the array has no values, or index is outside it
+    */
+   public void setArrayElement(String name, int index, int value)
+   {
+       int slot = symbols.arraySlot(name);
+       if (slot == -1 || symbols.arrays[slot] == null)
+       {
+           throw new IllegalArgumentException("no values for array " + name);
+       }
+       int[] arr = symbols.arrays[slot];
+       if (index < 0 || index >= arr.length)
+       {
+           throw new IllegalArgumentException("index " + index + " out of bounds for array " + name
+                   + " of length " + arr.length);
+       }
+       if (arr[index] != value)
+       {
+           arr[index] = value;
+           if (slot < arrayDeps.size())
+           {
+               mark(arrayDeps.get(slot));
+               Deps d = elementDeps.get(key(slot, index));
+               if (d != null)
+               {
+                   mark(d);
+               }
+           }
+       }
+   }
+
+   /**
+    * Applies the values of the lists, as loaded by Expression.loadVariableValues, marking
+    * only the formulas whose inputs changed.
+    *
+    * @param vars The variables array list
+    * @param arrays The arrays array list
+    */
+   public void load(ArrayList<Variable> vars, ArrayList<Array> arrays)
+   {
+       for (Variable var : vars)
+       {
+           setVar(var.name, var.value);
+       }
+       for (Array arr : arrays)
+       {
+           setArray(arr.name, arr.values);
+       }
+   }
+
+   private void markArray(int slot)
+   {
+       if (slot < arrayDeps.size())
+       {
+           mark(arrayDeps.get(slot));
+           for (Long k : elementKeys.get(slot))
+           {
+               mark(elementDeps.get(k));
+           }
+       }
+   }
+
+   private void mark(Deps d)
+   {
+       for (int i = 0; i < d.size; i++)
+       {
+           int id = d.ids[i];
+           if (!dirty[id])
+           {
+               dirty[id] = true;
+               if (dirtyCount == dirtyList.length)
+               {
+                   dirtyList = Arrays.copyOf(dirtyList, dirtyCount * 2);
+               }
+               dirtyList[dirtyCount++] = id;
+           }
+       }
+   }
+
+   /**
+    * Re-evaluates every formula whose inputs changed since the last call.
+    *
+    * @return Number of formulas re-evaluated
+    */
+   public int recompute()
+   {
+       int n = dirtyCount;
+       for (int i = 0; i < n; i++)
+       {
+           int id = dirtyList[i];
+           values[id] = evaluate(formulas.get(id));
+           dirty[id] = false;
+       }
+       dirtyCount = 0;
+       return n;
+   }
+
+   private float evaluate(CompiledExpression expr)
+   {
+       try
+       {
+           return expr.evaluate();
+       }
+       catch (RuntimeException e)
+       {
+           // arrays not loaded yet or index out of range
+           return Float.NaN;
+       }
+   }
+}
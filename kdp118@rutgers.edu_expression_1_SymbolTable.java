@@ -0,0 +1,249 @@
+package app;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Scanner;
+import java.util.StringTokenizer;
+
+/**
+ * Resolves variable and array names to dense integer slots, once, and holds their values in
+ * primitive arrays indexed by slot. Expressions compiled against a table read their
+ * operands with plain array indexing instead of searching the vars/arrays lists.
+ * Scalar variables and arrays have separate slot numbers, as they have separate lists.
+ */
+public class SymbolTable
+{
+   private final HashMap<String, Integer> varSlots = new HashMap<String, Integer>();
+   private final HashMap<String, Integer> arraySlots = new HashMap<String, Integer>();
+   private String[] varNames = new String[8];
+   private String[] arrayNames = new String[8];
+   float[] scalars = new float[8];
+   int[][] arrays = new int[8][];
+   private int varCount, arrayCount;
+
+   /**
+    * Builds a table with a slot for every entry of the lists, in list order, and their
+    * current values.
+    *
+    * @param vars The variables array list
+    * @param arrays The arrays array list
+    * @return The table
+    */
+   public static SymbolTable of(ArrayList<Variable> vars, ArrayList<Array> arrays)
+   {
+       SymbolTable table = new SymbolTable();
+       table.refresh(vars, arrays);
+       return table;
+   }
+
+   /**
+    * @param name Variable name
+    * @return Slot of the variable, -1 if it has none
+    */
+   public int varSlot(String name)
+   {
+       Integer slot = varSlots.get(name);
+       return slot == null ? -1 : slot;
+   }
+
+   /**
+    * @param name Array name
+    * @return Slot of the array, -1 if it has none
+    */
+   public int arraySlot(String name)
+   {
+       Integer slot = arraySlots.get(name);
+       return slot == null ? -1 : slot;
+   }
+
+   /**
+    * Returns the slot of a variable, giving it a new one (value 0) if it has none.
+    *
+    * @param name Variable name
+    * @return Slot of the variable
+    */
+   public int defineVar(String name)
+   {
+       Integer slot = varSlots.get(name);
+       if (slot == null)
+       {
+           if (varCount == varNames.length)
+           {
+               varNames = Arrays.copyOf(varNames, varCount * 2);
+               scalars = Arrays.copyOf(scalars, varCount * 2);
+           }
+           slot = varCount;
+           varNames[varCount++] = name;
+           varSlots.put(name, slot);
+       }
+       return slot;
+   }
+
+   /**
+    * Returns the slot of an array, giving it a new one (no values) if it has none.
+    *
+    * @param name Array name
+    * @return Slot of the array
+    */
+   public int defineArray(String name)
+   {
+       Integer slot = arraySlots.get(name);
+       if (slot == null)
+       {
+           if (arrayCount == arrayNames.length)
+           {
+               arrayNames = Arrays.copyOf(arrayNames, arrayCount * 2);
+               arrays = Arrays.copyOf(arrays, arrayCount * 2);
+           }
+           slot = arrayCount;
+           arrayNames[arrayCount++] = name;
+           arraySlots.put(name, slot);
+       }
+       return slot;
+   }
+
+   /**
+    * @return Number of variable slots
+    */
+   public int varCount()
+   {
+       return varCount;
+   }
+
+   /**
+    * @return Number of array slots
+    */
+   public int arrayCount()
+   {
+       return arrayCount;
+   }
+
+   /**
+    * @param slot Variable slot
+    * @return Name of the variable in that slot
+    */
+   public String varName(int slot)
+   {
+       checkSlot(slot, varCount);
+       return varNames[slot];
+   }
+
+   /**
+    * @param slot Array slot
+    * @return Name of the array in that slot
+    */
+   public String arrayName(int slot)
+   {
+       checkSlot(slot, arrayCount);
+       return arrayNames[slot];
+   }
+
+   /**
+    * @param slot Variable slot
+    * @return Value of the variable
+    */
+   public float getVar(int slot)
+   {
+       checkSlot(slot, varCount);
+       return scalars[slot];
+   }
+
+   /**
+    * @param slot Variable slot
+    * @param value New value of the variable
+    */
+   public void setVar(int slot, float value)
+   {
+       checkSlot(slot, varCount);
+       scalars[slot] = value;
+   }
+
+   /**
+    * @param slot Array slot
+    * @return Values of the array (not a copy), null if not loaded
+    */
+   public int[] getArray(int slot)
+   {
+       checkSlot(slot, arrayCount);
+       return arrays[slot];
+   }
+
+   /**
+    * @param slot Array slot
+    * @param values New values of the array (kept, not copied)
+    */
+   public void setArray(int slot, int[] values)
+   {
+       checkSlot(slot, arrayCount);
+       arrays[slot] = values;
+   }
+
+   /**
+    * Copies the values of every entry of the lists into the table, defining slots for names
+    * it does not have yet.
+    *
+    * @param vars The variables array list
+    * @param arrays The arrays array list
+    */
+   public void refresh(ArrayList<Variable> vars, ArrayList<Array> arrays)
+   {
+       for (Variable var : vars)
+       {
+           scalars[defineVar(var.name)] = var.value;
+       }
+       for (Array arr : arrays)
+       {
+           this.arrays[defineArray(arr.name)] = arr.values;
+       }
+   }
+
+   /**
+    * Loads values for the symbols in the table, in the input format of
+    * Expression.loadVariableValues. Lines naming symbols that have no slot are skipped.
+    *
+    * @param sc Scanner for values input
+    * @throws IOException If there is a problem with the input
+    */
+   public void load(Scanner sc) throws IOException
+   {
+       while (sc.hasNextLine())
+       {
+           StringTokenizer st = new StringTokenizer(sc.nextLine().trim());
+           int numTokens = st.countTokens();
+           if (numTokens == 0)
+           {
+               continue;
+           }
+           String tok = st.nextToken();
+           if (numTokens == 2 && varSlot(tok) != -1)
+           { // scalar symbol
+               scalars[varSlot(tok)] = Integer.parseInt(st.nextToken());
+               continue;
+           }
+           int slot = arraySlot(tok);
+           if (slot == -1)
+           {
+               continue;
+           }
+           int[] values = new int[Integer.parseInt(st.nextToken())];
+           // following are (index,val) pairs
+           while (st.hasMoreTokens())
+           {
+               StringTokenizer stt = new StringTokenizer(st.nextToken(), " (,)");
+               int index = Integer.parseInt(stt.nextToken());
+               values[index] = Integer.parseInt(stt.nextToken());
+           }
+           arrays[slot] = values;
+       }
+   }
+
+   private static void checkSlot(int slot, int count)
+   {
+       if (slot < 0 || slot >= count)
+       {
+           throw new IndexOutOfBoundsException("slot " + slot + " of " + count);
+       }
+   }
+}
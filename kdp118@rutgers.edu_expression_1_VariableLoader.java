@@ -0,0 +1,361 @@
+package app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Loads variable values from a file in the input format of Expression.loadVariableValues:
+ * <pre>
+ * name value
+ * name length (index,val) (index,val) ...
+ * </pre>
+ * The file is memory-mapped and integers are parsed by hand straight into the target
+ * int[] of each array. The (index,val) pairs of very long array lines are split into chunks
+ * that are parsed in parallel. Lines naming unknown symbols are skipped.
+ */
+public class VariableLoader
+{
+   // bytes mapped at a time
+   static final long MAP_WINDOW = 1L << 30;
+
+   // array bodies longer than this many bytes are parsed in parallel chunks
+   static final int PARALLEL_BYTES = 1 << 22;
+
+   /**
+    * Where loaded values go
+    */
+   private abstract static class Sink
+   {
+       // stores a scalar value; false if there is no such variable
+       abstract boolean setScalar(String name, int value);
+
+       // array to fill for the given name and length, null if there is no such array
+       abstract int[] newArray(String name, int length);
+   }
+
+   private final Sink sink;
+   private final ForkJoinPool pool;
+
+   private VariableLoader(Sink sink, ForkJoinPool pool)
+   {
+       this.sink = sink;
+       this.pool = pool;
+   }
+
+   /**
+    * Loads values into the slots of a symbol table.
+    *
+    * @param file File with the values
+    * @param symbols Table whose variables and arrays are loaded
+    * @throws IOException If there is a problem with the input
+    */
+   public static void load(Path file, final SymbolTable symbols) throws IOException
+   {
+       new VariableLoader(new Sink()
+       {
+           boolean setScalar(String name, int value)
+           {
+               int slot = symbols.varSlot(name);
+               if (slot == -1)
+               {
+                   return false;
+               }
+               symbols.setVar(slot, value);
+               return true;
+           }
+
+           int[] newArray(String name, int length)
+           {
+               int slot = symbols.arraySlot(name);
+               if (slot == -1)
+               {
+                   return null;
+               }
+               int[] values = new int[length];
+               symbols.setArray(slot, values);
+               return values;
+           }
+       }, ForkJoinPool.commonPool()).load(file);
+   }
+
+   /**
+    * Loads values into the lists filled by Expression.makeVariableLists, with the same effect
+    * as Expression.loadVariableValues.
+    *
+    * @param file File with the values
+    * @param vars The variables array list, previously populated by makeVariableLists
+    * @param arrays The arrays array list - previously populated by makeVariableLists
+    * @throws IOException If there is a problem with the input
+    */
+   public static void load(Path file, ArrayList<Variable> vars, ArrayList<Array> arrays)
+           throws IOException
+   {
+       final HashMap<String, Variable> varIndex = new HashMap<String, Variable>();
+       final HashMap<String, Array> arrIndex = new HashMap<String, Array>();
+       for (Variable v : vars)
+       {
+           varIndex.putIfAbsent(v.name, v);
+       }
+       for (Array a : arrays)
+       {
+           arrIndex.putIfAbsent(a.name, a);
+       }
+       new VariableLoader(new Sink()
+       {
+           boolean setScalar(String name, int value)
+           {
+               Variable var = varIndex.get(name);
+               if (var == null)
+               {
+                   return false;
+               }
+               var.value = value;
+               return true;
+           }
+
+           int[] newArray(String name, int length)
+           {
+               Array arr = arrIndex.get(name);
+               if (arr == null)
+               {
+                   return null;
+               }
+               arr.values = new int[length];
+               return arr.values;
+           }
+       }, ForkJoinPool.commonPool()).load(file);
+   }
+
+   private void load(Path file) throws IOException
+   {
+       try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+       {
+           long size = channel.size();
+           long offset = 0;
+           while (offset < size)
+           {
+               long length = Math.min(MAP_WINDOW, size - offset);
+               boolean eof = offset + length == size;
+               ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+               int consumed = parseLines(window, eof);
+               if (consumed == 0)
+               {
+                   throw new IOException("line longer than " + MAP_WINDOW + " bytes at offset " + offset);
+               }
+               offset += consumed;
+           }
+       }
+   }
+
+   /**
+    * Parses every complete line of the buffer.
+    *
+    * @return Number of bytes consumed; a trailing incomplete line is left for the next window
+    */
+   private int parseLines(ByteBuffer buf, boolean eof) throws IOException
+   {
+       int limit = buf.limit();
+       int lineStart = 0;
+       while (lineStart < limit)
+       {
+           int lineEnd = lineStart;
+           while (lineEnd < limit && buf.get(lineEnd) != '\n')
+           {
+               lineEnd++;
+           }
+           if (lineEnd == limit && !eof)
+           {
+               return lineStart;
+           }
+           parseLine(buf, lineStart, lineEnd);
+           lineStart = lineEnd + 1;
+       }
+       return limit;
+   }
+
+   private void parseLine(ByteBuffer buf, int pos, int end) throws IOException
+   {
+       pos = skipSpace(buf, pos, end);
+       int nameStart = pos;
+       while (pos < end && buf.get(pos) > ' ')
+       {
+           pos++;
+       }
+       if (pos == nameStart)
+       {
+           return; // blank line
+       }
+       byte[] nameBytes = new byte[pos - nameStart];
+       for (int i = 0; i < nameBytes.length; i++)
+       {
+           nameBytes[i] = buf.get(nameStart + i);
+       }
+       String name = new String(nameBytes, StandardCharsets.US_ASCII);
+       int numStart = skipSpace(buf, pos, end);
+       int numEnd = numStart;
+       while (numEnd < end && buf.get(numEnd) > ' ')
+       {
+           numEnd++;
+       }
+       int num = parseInt(buf, numStart, numEnd);
+       int bodyStart = skipSpace(buf, numEnd, end);
+       if (bodyStart == end && sink.setScalar(name, num))
+       { // scalar symbol
+           return;
+       }
+       int[] values = sink.newArray(name, num);
+       if (values == null)
+       {
+           return;
+       }
+       if (end - bodyStart <= PARALLEL_BYTES)
+       {
+           parsePairs(buf, bodyStart, end, values);
+       }
+       else
+       {
+           try
+           {
+               pool.invoke(new PairTask(buf, bodyStart, end, values));
+           }
+           catch (UncheckedIOException e)
+           {
+               throw e.getCause();
+           }
+       }
+   }
+
+   /**
+    * Parses the (index,val) pairs that start in [pos, end) into values.
+    */
+   static void parsePairs(ByteBuffer buf, int pos, int end, int[] values) throws IOException
+   {
+       while (true)
+       {
+           while (pos < end && buf.get(pos) != '(')
+           {
+               pos++;
+           }
+           if (pos == end)
+           {
+               return;
+           }
+           int indexStart = pos + 1;
+           int comma = indexStart;
+           while (comma < end && buf.get(comma) != ',')
+           {
+               comma++;
+           }
+           int close = comma;
+           while (close < end && buf.get(close) != ')')
+           {
+               close++;
+           }
+           if (close == end)
+           {
+               throw new IOException("unterminated (index,val) pair");
+           }
+           int index = parseInt(buf, indexStart, comma);
+           if (index < 0 || index >= values.length)
+           {
+               throw new IOException("index " + index + " out of bounds for length " + values.length);
+           }
+           values[index] = parseInt(buf, comma + 1, close);
+           pos = close + 1;
+       }
+   }
+
+   private static int skipSpace(ByteBuffer buf, int pos, int end)
+   {
+       while (pos < end && buf.get(pos) <= ' ')
+       {
+           pos++;
+       }
+       return pos;
+   }
+
+   private static int parseInt(ByteBuffer buf, int pos, int end) throws IOException
+   {
+       pos = skipSpace(buf, pos, end);
+       while (end > pos && buf.get(end - 1) <= ' ')
+       {
+           end--;
+       }
+       boolean negative = pos < end && buf.get(pos) == '-';
+       if (negative || (pos < end && buf.get(pos) == '+'))
+       {
+           pos++;
+       }
+       if (pos == end)
+       {
+           throw new IOException("number expected");
+       }
+       long value = 0;
+       for (; pos < end; pos++)
+       {
+           int digit = buf.get(pos) - '0';
+           if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE)
+           {
+               throw new IOException("bad integer");
+           }
+           value = value * 10 + digit;
+       }
+       value = negative ? -value : value;
+       if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE)
+       {
+           throw new IOException("integer out of range");
+       }
+       return (int) value;
+   }
+
+   /**
+    * Parses an array body by halves, cutting at '(' so that no pair is split
+    */
+   private static class PairTask extends RecursiveAction
+   {
+       private static final long serialVersionUID = 1L;
+       private final ByteBuffer buf;
+       private final int from, to;
+       private final int[] values;
+
+       PairTask(ByteBuffer buf, int from, int to, int[] values)
+       {
+           this.buf = buf;
+           this.from = from;
+           this.to = to;
+           this.values = values;
+       }
+
+       @Override
+       protected void compute()
+       {
+           try
+           {
+               if (to - from <= PARALLEL_BYTES)
+               {
+                   parsePairs(buf, from, to, values);
+                   return;
+               }
+               int mid = (from + to) >>> 1;
+               while (mid < to && buf.get(mid) != '(')
+               {
+                   mid++;
+               }
+               invokeAll(new PairTask(buf, from, mid, values), new PairTask(buf, mid, to, values));
+           }
+           catch (IOException e)
+           {
+               throw new UncheckedIOException(e);
+           }
+       }
+   }
+}
@@ -0,0 +1,79 @@
+package friends;
+
+import java.util.BitSet;
+
+/**
+ * Finds the connectors (articulation points) of a CsrGraph with Tarjan's algorithm, in
+ * O(V+E) time. The depth-first search keeps its own stack of people and the next friend
+ * entry to look at for each, so chains of any length are handled without recursion, and a
+ * single DFS number counter runs across all components.
+ *
+ * A person v who is not the root of a DFS tree is a connector if some child w in the tree
+ * has no back edge above v (back[w] >= dfsnum[v]); a root is a connector if it has more than
+ * one child.
+ */
+public class ArticulationPoints {
+
+	/**
+	 * @param g Graph to search
+	 * @return Bit v is set if person v is a connector
+	 */
+	public static BitSet find(CsrGraph g) {
+		int n = g.size();
+		int[] dfsnum = new int[n];
+		int[] back = new int[n];
+		int[] parent = new int[n];
+		int[] next = new int[n];
+		int[] stack = new int[n];
+		// set once the edge back to the parent has been skipped, so parallel edges count
+		BitSet parentSkipped = new BitSet(n);
+		BitSet connectors = new BitSet(n);
+		int counter = 0;
+		for (int root=0; root < n; root++) {
+			if (dfsnum[root] != 0) {
+				continue;
+			}
+			int rootChildren = 0;
+			int sp = 0;
+			dfsnum[root] = back[root] = ++counter;
+			parent[root] = -1;
+			next[root] = g.offsets[root];
+			stack[sp++] = root;
+			while (sp > 0) {
+				int v = stack[sp-1];
+				if (next[v] < g.offsets[v+1]) {
+					int w = g.neighbors[next[v]++];
+					if (dfsnum[w] == 0) {
+						dfsnum[w] = back[w] = ++counter;
+						parent[w] = v;
+						next[w] = g.offsets[w];
+						stack[sp++] = w;
+						if (v == root) {
+							rootChildren++;
+						}
+					} else if (w == parent[v] && !parentSkipped.get(v)) {
+						parentSkipped.set(v);
+					} else if (dfsnum[w] < back[v]) {
+						back[v] = dfsnum[w];
+					}
+					continue;
+				}
+				// v is done: pass its back number up to its parent
+				sp--;
+				int p = parent[v];
+				if (p != -1) {
+					if (back[v] < back[p]) {
+						back[p] = back[v];
+					}
+					if (p != root && back[v] >= dfsnum[p]) {
+						connectors.set(p);
+					}
+				}
+			}
+			if (rootChildren > 1) {
+				connectors.set(root);
+			}
+		}
+		return connectors;
+	}
+}
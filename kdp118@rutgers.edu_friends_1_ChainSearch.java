@@ -0,0 +1,201 @@
+package friends;
+
+import java.util.Arrays;
+
+/**
+ * Bidirectional breadth-first search for shortest chains in a CsrGraph. One search grows
+ * from each end, always expanding the side with the smaller frontier by a full level, and
+ * stops at the end of the first level on which the two searches meet. Chains between people
+ * who are close touch only a small part of the graph.
+ *
+ * Each thread keeps its scratch arrays between searches. A vertex counts as visited only if
+ * its stamp equals the current search's generation, so nothing is cleared between searches.
+ */
+public class ChainSearch {
+
+	private static final ThreadLocal<ChainSearch> scratch = new ThreadLocal<ChainSearch>() {
+		protected ChainSearch initialValue() {
+			return new ChainSearch();
+		}
+	};
+
+	// forward (from source) and backward (from target) state, valid where stamp == gen
+	private int[] stampF = new int[0], stampB = new int[0];
+	private int[] predF, predB, distF, distB, queueF, queueB;
+	private int gen;
+
+	// number of vertices reached by the last search, for diagnostics
+	private int touched;
+
+	/**
+	 * Finds a shortest chain from s to t.
+	 *
+	 * @param g Graph to search
+	 * @param s Index of the source person
+	 * @param t Index of the target person
+	 * @return Indexes of the people on the chain, from s to t; null if t cannot be reached
+	 */
+	public static int[] path(CsrGraph g, int s, int t) {
+		return scratch.get().search(g, s, t);
+	}
+
+	/**
+	 * Finds shortest chains from s to many targets with a single breadth-first search from s,
+	 * which stops as soon as every target has been reached. All chains are read off the one
+	 * predecessor array of that search.
+	 *
+	 * @param g Graph to search
+	 * @param s Index of the source person
+	 * @param targets Indexes of the target people
+	 * @return For each target, in the same order, the indexes of the people on a shortest chain
+	 *         from s to it; null for a target that cannot be reached
+	 */
+	public static int[][] paths(CsrGraph g, int s, int[] targets) {
+		return scratch.get().searchAll(g, s, targets);
+	}
+
+	/**
+	 * @return Number of people reached by the calling thread's last search
+	 */
+	public static int lastTouched() {
+		return scratch.get().touched;
+	}
+
+	private void prepare(int n) {
+		if (stampF.length < n) {
+			stampF = new int[n];
+			stampB = new int[n];
+			predF = new int[n];
+			predB = new int[n];
+			distF = new int[n];
+			distB = new int[n];
+			queueF = new int[n];
+			queueB = new int[n];
+			gen = 0;
+		}
+		if (gen == Integer.MAX_VALUE) {
+			Arrays.fill(stampF, 0);
+			Arrays.fill(stampB, 0);
+			gen = 0;
+		}
+		gen++;
+	}
+
+	private int[][] searchAll(CsrGraph g, int s, int[] targets) {
+		prepare(g.size());
+		// targets still to reach are marked with stampB == gen
+		int pending = 0;
+		for (int t : targets) {
+			if (stampB[t] != gen) {
+				stampB[t] = gen;
+				pending++;
+			}
+		}
+		stampF[s] = gen;
+		predF[s] = -1;
+		distF[s] = 0;
+		queueF[0] = s;
+		if (stampB[s] == gen) {
+			stampB[s] = 0;
+			pending--;
+		}
+		int tail = 1;
+		for (int head=0; head < tail && pending > 0; head++) {
+			int v = queueF[head];
+			for (int e=g.offsets[v]; e < g.offsets[v+1]; e++) {
+				int w = g.neighbors[e];
+				if (stampF[w] == gen) {
+					continue;
+				}
+				stampF[w] = gen;
+				predF[w] = v;
+				distF[w] = distF[v] + 1;
+				queueF[tail++] = w;
+				if (stampB[w] == gen) {
+					stampB[w] = 0;
+					pending--;
+				}
+			}
+		}
+		touched = tail;
+		int[][] paths = new int[targets.length][];
+		for (int i=0; i < targets.length; i++) {
+			int t = targets[i];
+			if (stampF[t] != gen) {
+				continue;
+			}
+			int[] path = new int[distF[t] + 1];
+			for (int v=t, k=distF[t]; v != -1; v=predF[v], k--) {
+				path[k] = v;
+			}
+			paths[i] = path;
+		}
+		return paths;
+	}
+
+	private int[] search(CsrGraph g, int s, int t) {
+		if (s == t) {
+			touched = 1;
+			return new int[] {s};
+		}
+		prepare(g.size());
+		stampF[s] = gen;
+		predF[s] = -1;
+		distF[s] = 0;
+		queueF[0] = s;
+		stampB[t] = gen;
+		predB[t] = -1;
+		distB[t] = 0;
+		queueB[0] = t;
+		// level being expanded is queue[head..tail)
+		int headF = 0, tailF = 1, headB = 0, tailB = 1;
+		int meet = -1, best = Integer.MAX_VALUE;
+		while (headF < tailF && headB < tailB && meet == -1) {
+			boolean forward = tailF - headF <= tailB - headB;
+			int[] stamp = forward ? stampF : stampB, other = forward ? stampB : stampF;
+			int[] pred = forward ? predF : predB, dist = forward ? distF : distB;
+			int[] otherDist = forward ? distB : distF;
+			int[] queue = forward ? queueF : queueB;
+			int head = forward ? headF : headB, tail = forward ? tailF : tailB;
+			int end = tail;
+			for (; head < end; head++) {
+				int v = queue[head];
+				for (int e=g.offsets[v]; e < g.offsets[v+1]; e++) {
+					int w = g.neighbors[e];
+					if (stamp[w] == gen) {
+						continue;
+					}
+					stamp[w] = gen;
+					pred[w] = v;
+					dist[w] = dist[v] + 1;
+					queue[tail++] = w;
+					if (other[w] == gen && dist[w] + otherDist[w] < best) {
+						best = dist[w] + otherDist[w];
+						meet = w;
+					}
+				}
+			}
+			if (forward) {
+				headF = head;
+				tailF = tail;
+			} else {
+				headB = head;
+				tailB = tail;
+			}
+		}
+		touched = tailF + tailB;
+		if (meet == -1) {
+			return null;
+		}
+		int[] path = new int[distF[meet] + distB[meet] + 1];
+		int i = distF[meet];
+		for (int v=meet; v != -1; v=predF[v]) {
+			path[i--] = v;
+		}
+		i = distF[meet];
+		for (int v=meet; v != -1; v=predB[v]) {
+			path[i++] = v;
+		}
+		return path;
+	}
+}
@@ -0,0 +1,123 @@
+package structures;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded queue of int values that any number of threads may enqueue to and dequeue from at
+ * once, without locks. Each cell of the ring carries a sequence number telling whether it is
+ * ready to be written for ticket t (sequence t) or to be read for it (sequence t+1); a
+ * thread claims a ticket with one compare-and-set on the shared tail or head counter, then
+ * fills or empties its cell and publishes the new sequence number.
+ *
+ * A full queue rejects offers rather than growing, so producers can tell when to slow down.
+ */
+public class ConcurrentIntQueue {
+
+	private final int[] items;
+	private final AtomicLongArray sequence;
+	private final int mask;
+
+	// next ticket to enqueue and to dequeue
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * Initializes queue to empty
+	 *
+	 * @param capacity Maximum number of items; rounded up to a power of two
+	 */
+	public ConcurrentIntQueue(int capacity) {
+		int length = 1;
+		while (length < capacity) {
+			length *= 2;
+		}
+		items = new int[length];
+		sequence = new AtomicLongArray(length);
+		for (int i=0; i < length; i++) {
+			sequence.set(i, i);
+		}
+		mask = length - 1;
+	}
+
+	/**
+	 * Adds an item to the rear of this queue, if there is room
+	 *
+	 * @param item Item to be enqueued
+	 * @return True if the item was added, false if the queue is full
+	 */
+	public boolean offer(int item) {
+		while (true) {
+			long t = tail.get();
+			int cell = (int) t & mask;
+			long seq = sequence.get(cell);
+			if (seq == t) {
+				if (tail.compareAndSet(t, t + 1)) {
+					items[cell] = item;
+					sequence.lazySet(cell, t + 1);
+					return true;
+				}
+			} else if (seq < t) {
+				// the cell still holds the item from one lap ago
+				return false;
+			}
+			// otherwise another producer took ticket t; try again with a fresh one
+		}
+	}
+
+	/**
+	 * Removes the item at the front of this queue, if there is one
+	 *
+	 * @param empty Value to return if the queue is empty
+	 * @return Item at front, or empty
+	 */
+	public int poll(int empty) {
+		while (true) {
+			long h = head.get();
+			int cell = (int) h & mask;
+			long seq = sequence.get(cell);
+			if (seq == h + 1) {
+				if (head.compareAndSet(h, h + 1)) {
+					int item = items[cell];
+					// ready for the producer one lap ahead
+					sequence.lazySet(cell, h + items.length);
+					return item;
+				}
+			} else if (seq < h + 1) {
+				return empty;
+			}
+		}
+	}
+
+	/**
+	 * Tells if queue is empty; only a snapshot while other threads are using it
+	 *
+	 * @return True if queue is empty, false if not
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the number of items in this queue; only a snapshot while other threads are
+	 * using it
+	 *
+	 * @return Number of items
+	 */
+	public int size() {
+		while (true) {
+			long h = head.get();
+			long t = tail.get();
+			if (head.get() == h) {
+				return (int) Math.max(0, Math.min(t - h, items.length));
+			}
+		}
+	}
+
+	/**
+	 * @return Maximum number of items
+	 */
+	public int capacity() {
+		return items.length;
+	}
+}
@@ -0,0 +1,175 @@
+package friends;
+
+import java.util.HashMap;
+
+/**
+ * Frozen compressed-sparse-row form of a Graph. The friends of person v are
+ * neighbors[offsets[v]] .. neighbors[offsets[v+1]-1], in the same order as v's Friend list,
+ * and school[v] is the id of v's school (-1 if v is not a student). Person indexes are the
+ * same as in the Graph the CSR form was built from.
+ *
+ * Traversals read two flat int arrays instead of chasing Friend nodes, and the whole
+ * structure takes a fraction of the heap of Person/Friend objects.
+ */
+public class CsrGraph {
+
+	/**
+	 * Start of each person's friends in neighbors, plus the total at offsets[size()]
+	 */
+	final int[] offsets;
+
+	/**
+	 * Friend indexes of all people, person by person
+	 */
+	final int[] neighbors;
+
+	/**
+	 * School id of each person, -1 for none
+	 */
+	final int[] school;
+
+	// names of people and of schools, by index and by id
+	final NameTable names;
+	final NameTable schools;
+
+	// built on first use; the graph never changes, so it never goes stale
+	private volatile SchoolIndex schoolIndex;
+
+	CsrGraph(int[] offsets, int[] neighbors, int[] school, String[] names, String[] schoolNames) {
+		this(offsets, neighbors, school, NameTable.of(names), NameTable.of(schoolNames));
+	}
+
+	CsrGraph(int[] offsets, int[] neighbors, int[] school, NameTable names, NameTable schools) {
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.school = school;
+		this.names = names;
+		this.schools = schools;
+	}
+
+	/**
+	 * Builds the CSR form of a graph. Later changes to the graph are not reflected.
+	 *
+	 * @param g Graph to convert
+	 * @return CSR form of g
+	 */
+	public static CsrGraph of(Graph g) {
+		int n = g.members.length;
+		int[] offsets = new int[n+1];
+		for (int v=0; v < n; v++) {
+			int degree = 0;
+			for (Friend ptr=g.members[v].first; ptr != null; ptr=ptr.next) {
+				degree++;
+			}
+			offsets[v+1] = offsets[v] + degree;
+		}
+		int[] neighbors = new int[offsets[n]];
+		int[] school = new int[n];
+		String[] names = new String[n];
+		HashMap<String,Integer> schoolIds = new HashMap<String,Integer>();
+		for (int v=0; v < n; v++) {
+			Person p = g.members[v];
+			names[v] = p.name;
+			int e = offsets[v];
+			for (Friend ptr=p.first; ptr != null; ptr=ptr.next) {
+				neighbors[e++] = ptr.fnum;
+			}
+			if (p.school == null) {
+				school[v] = -1;
+			} else {
+				Integer id = schoolIds.get(p.school);
+				if (id == null) {
+					id = schoolIds.size();
+					schoolIds.put(p.school, id);
+				}
+				school[v] = id;
+			}
+		}
+		String[] schoolNames = new String[schoolIds.size()];
+		for (String s : schoolIds.keySet()) {
+			schoolNames[schoolIds.get(s)] = s;
+		}
+		return new CsrGraph(offsets, neighbors, school, names, schoolNames);
+	}
+
+	/**
+	 * @return Number of people
+	 */
+	public int size() {
+		return school.length;
+	}
+
+	/**
+	 * @return Number of friendships (each counted once)
+	 */
+	public int edgeCount() {
+		return neighbors.length/2;
+	}
+
+	/**
+	 * @param v Person index
+	 * @return Number of friends of v
+	 */
+	public int degree(int v) {
+		return offsets[v+1] - offsets[v];
+	}
+
+	/**
+	 * @param v Person index
+	 * @return Name of the person
+	 */
+	public String name(int v) {
+		return names.name(v);
+	}
+
+	/**
+	 * @param name Name of a person, as stored in the graph (lower case)
+	 * @return Index of the person, -1 if there is no such person
+	 */
+	public int index(String name) {
+		return names.index(name);
+	}
+
+	/**
+	 * @param v Person index
+	 * @return School id of the person, -1 if not a student
+	 */
+	public int school(int v) {
+		return school[v];
+	}
+
+	/**
+	 * @param name Name of a school, as stored in the graph (lower case)
+	 * @return Id of the school, -1 if no one goes there
+	 */
+	public int schoolId(String name) {
+		return schools.index(name);
+	}
+
+	/**
+	 * @param id School id
+	 * @return Name of the school
+	 */
+	public String schoolName(int id) {
+		return schools.name(id);
+	}
+
+	/**
+	 * @return Number of distinct schools
+	 */
+	public int schoolCount() {
+		return schools.size();
+	}
+
+	/**
+	 * @return Cliques of every school, built on the first call
+	 */
+	public SchoolIndex schoolIndex() {
+		SchoolIndex index = schoolIndex;
+		if (index == null) {
+			index = SchoolIndex.of(this);
+			schoolIndex = index;
+		}
+		return index;
+	}
+}
@@ -0,0 +1,637 @@
+package friends;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import structures.IntQueue;
+
+/**
+ * A friendship graph that changes, with school cliques and chain distances kept up to date
+ * as friendships are added and removed, instead of being recomputed from scratch.
+ *
+ * Cliques: every student carries the id of its clique. A new friendship inside a school
+ * relabels the smaller of the two cliques it joins; a removed one searches from both of its
+ * ends in lockstep and, if they are no longer connected, relabels the side that finished
+ * first, so the work is proportional to the smaller piece.
+ *
+ * Chains: BFS distances from a few landmarks, chosen as in LandmarkOracle, are kept for
+ * every person. A new
+ * friendship can only shorten distances and is propagated from its ends; a removed one
+ * re-settles only the people whose every shortest route to a landmark went through it.
+ * d(s,L)+d(L,t) and |d(s,L)-d(t,L)| bound the length of the chain from s to t, and when the
+ * bounds meet the chain is read off the landmark distances without searching.
+ *
+ * People and schools are those of the graph the instance was built from. Not synchronized.
+ */
+public class DynamicFriends {
+
+	static final int INF = LandmarkDistances.INF;
+
+	private final CsrGraph base;
+	private final int n;
+
+	// friends of each person, in adj[v][0 .. deg[v])
+	private final int[][] adj;
+	private final int[] deg;
+
+	// clique id of each student (-1 for others), members of each clique (an entry is live
+	// only where comp and pos of its person point back at it; others are stale), live size,
+	// and the cliques of each school
+	private final int[] comp;
+	private final int[] pos;
+	private int[][] members;
+	private int[] memberCount, compSize;
+	private int compCount;
+
+	// clique ids given up by merge, taken again by split so the arrays above stay bounded by
+	// the number of cliques that exist at once
+	private int[] freeIds = new int[4];
+	private int freeCount;
+	private final ArrayList<LinkedHashSet<Integer>> schoolComps;
+
+	// distance from landmark k to everyone at dist[k] (INF if unreachable), and the bounds
+	// and chains they give
+	private final int[][] dist;
+	private final Landmarks landmarks;
+
+	// search scratch, valid where stamp == gen
+	private final int[] stampA, stampB, predA, predB, queueA, queueB;
+
+	// people lowered while re-settling distances after a removal
+	private final IntQueue settle = new IntQueue();
+	private int gen;
+
+	/**
+	 * @param g Graph with the initial people and friendships
+	 */
+	public DynamicFriends(CsrGraph g) {
+		this(g, LandmarkDistances.DEFAULT_LANDMARKS);
+	}
+
+	/**
+	 * @param g Graph with the initial people and friendships
+	 * @param landmarkCount Number of landmarks; more cost memory and update time but give
+	 *        exact answers more often
+	 */
+	public DynamicFriends(CsrGraph g, int landmarkCount) {
+		base = g;
+		n = g.size();
+		adj = new int[n][];
+		deg = new int[n];
+		for (int v=0; v < n; v++) {
+			adj[v] = Arrays.copyOfRange(g.neighbors, g.offsets[v], g.offsets[v+1]);
+			deg[v] = adj[v].length;
+		}
+
+		comp = new int[n];
+		Arrays.fill(comp, -1);
+		pos = new int[n];
+		SchoolIndex index = g.schoolIndex();
+		int total = 0;
+		for (int s=0; s < g.schoolCount(); s++) {
+			total += index.cliqueCount(s);
+		}
+		members = new int[Math.max(total, 1)][];
+		memberCount = new int[members.length];
+		compSize = new int[members.length];
+		schoolComps = new ArrayList<LinkedHashSet<Integer>>();
+		for (int s=0; s < g.schoolCount(); s++) {
+			LinkedHashSet<Integer> comps = new LinkedHashSet<Integer>();
+			for (int k=0; k < index.cliqueCount(s); k++) {
+				int c = compCount++;
+				members[c] = index.clique(s, k);
+				memberCount[c] = compSize[c] = members[c].length;
+				for (int i=0; i < members[c].length; i++) {
+					comp[members[c][i]] = c;
+					pos[members[c][i]] = i;
+				}
+				comps.add(c);
+			}
+			schoolComps.add(comps);
+		}
+
+		landmarks = new Landmarks(LandmarkDistances.choose(g, landmarkCount));
+		dist = new int[landmarks.landmarks.length][];
+		stampA = new int[n];
+		stampB = new int[n];
+		predA = new int[n];
+		predB = new int[n];
+		queueA = new int[n];
+		queueB = new int[n];
+		for (int k=0; k < dist.length; k++) {
+			int l = landmarks.landmarks[k];
+			dist[k] = new int[n];
+			Arrays.fill(dist[k], INF);
+			dist[k][l] = 0;
+			queueA[0] = l;
+			relax(dist[k], 1);
+		}
+	}
+
+	private int index(String name) {
+		return name == null ? -1 : base.index(name.toLowerCase());
+	}
+
+	private int nextGen() {
+		if (++gen == INF) {
+			Arrays.fill(stampA, 0);
+			Arrays.fill(stampB, 0);
+			gen = 1;
+		}
+		return gen;
+	}
+
+	/**
+	 * @param p1 Name of a person
+	 * @param p2 Name of a person
+	 * @return True if they are friends
+	 */
+	public boolean areFriends(String p1, String p2) {
+		int u = index(p1), w = index(p2);
+		return u != -1 && w != -1 && position(u, w) != -1;
+	}
+
+	private int position(int v, int w) {
+		for (int i=0; i < deg[v]; i++) {
+			if (adj[v][i] == w) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Makes two people friends.
+	 *
+	 * @param p1 Name of a person
+	 * @param p2 Name of another person
+	 * @return True if the friendship is new
+	 * @throws IllegalArgumentException If either person does not exist
+	 */
+	public boolean addFriendship(String p1, String p2) {
+		int u = existing(p1), w = existing(p2);
+		if (u == w || position(u, w) != -1) {
+			return false;
+		}
+		link(u, w);
+		link(w, u);
+		if (comp[u] != -1 && base.school[u] == base.school[w] && comp[u] != comp[w]) {
+			merge(comp[u], comp[w], base.school[u]);
+		}
+		for (int k=0; k < dist.length; k++) {
+			int[] d = dist[k];
+			if (d[u] != INF && d[u] + 1 < d[w]) {
+				d[w] = d[u] + 1;
+				queueA[0] = w;
+				relax(d, 1);
+			} else if (d[w] != INF && d[w] + 1 < d[u]) {
+				d[u] = d[w] + 1;
+				queueA[0] = u;
+				relax(d, 1);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Ends the friendship of two people.
+	 *
+	 * @param p1 Name of a person
+	 * @param p2 Name of another person
+	 * @return True if they were friends
+	 * @throws IllegalArgumentException If either person does not exist
+	 */
+	public boolean removeFriendship(String p1, String p2) {
+		int u = existing(p1), w = existing(p2);
+		int i = position(u, w);
+		if (i == -1) {
+			return false;
+		}
+		adj[u][i] = adj[u][--deg[u]];
+		int j = position(w, u);
+		adj[w][j] = adj[w][--deg[w]];
+		if (comp[u] != -1 && comp[u] == comp[w]) {
+			split(u, w);
+		}
+		for (int k=0; k < dist.length; k++) {
+			int[] d = dist[k];
+			if (d[u] == INF) {
+				continue;
+			}
+			if (d[w] == d[u] + 1) {
+				repair(d, w);
+			} else if (d[u] == d[w] + 1) {
+				repair(d, u);
+			}
+		}
+		return true;
+	}
+
+	private int existing(String name) {
+		int v = index(name);
+		if (v == -1) {
+			throw new IllegalArgumentException("no person " + name);
+		}
+		return v;
+	}
+
+	private void link(int v, int w) {
+		if (deg[v] == adj[v].length) {
+			adj[v] = Arrays.copyOf(adj[v], Math.max(4, deg[v] * 2));
+		}
+		adj[v][deg[v]++] = w;
+	}
+
+	/**
+	 * BFS from queueA[0 .. tail), whose distances are set, lowering distances of others.
+	 */
+	private void relax(int[] d, int tail) {
+		for (int head=0; head < tail; head++) {
+			int v = queueA[head];
+			for (int i=0; i < deg[v]; i++) {
+				int w = adj[v][i];
+				if (d[v] + 1 < d[w]) {
+					d[w] = d[v] + 1;
+					queueA[tail++] = w;
+				}
+			}
+		}
+	}
+
+	/**
+	 * After the edge from its parent in the shortest-path tree is gone, re-settles x and
+	 * every person whose distance depended on it.
+	 */
+	private void repair(int[] d, int x) {
+		if (supported(d, x, -1)) {
+			return;
+		}
+		// collect the affected people level by level; all of a level are marked before the
+		// next level is checked
+		int g = nextGen();
+		int tail = 0;
+		stampA[x] = g;
+		queueA[tail++] = x;
+		for (int head=0; head < tail; head++) {
+			int v = queueA[head];
+			for (int i=0; i < deg[v]; i++) {
+				int y = adj[v][i];
+				if (stampA[y] != g && d[y] == d[v] + 1 && !supported(d, y, g)) {
+					stampA[y] = g;
+					queueA[tail++] = y;
+				}
+			}
+		}
+		// best distance through an unaffected friend, then settle in distance order: every
+		// step adds 1, so merging the seeds (sorted by distance) with a FIFO queue of the
+		// people they lower visits people in distance order without a priority queue
+		long[] seeds = new long[tail];
+		int count = 0;
+		for (int a=0; a < tail; a++) {
+			int v = queueA[a];
+			int best = INF;
+			for (int i=0; i < deg[v]; i++) {
+				int z = adj[v][i];
+				if (stampA[z] != g && d[z] != INF && d[z] + 1 < best) {
+					best = d[z] + 1;
+				}
+			}
+			d[v] = best;
+			if (best != INF) {
+				seeds[count++] = (long) best << 32 | v;
+			}
+		}
+		Arrays.sort(seeds, 0, count);
+		settle.clear();
+		int next = 0;
+		while (next < count || !settle.isEmpty()) {
+			int v;
+			if (settle.isEmpty() || (next < count && (int) (seeds[next] >>> 32) <= d[settle.peek()])) {
+				long seed = seeds[next++];
+				v = (int) seed;
+				// lowered since, and settled from the queue
+				if ((int) (seed >>> 32) != d[v]) {
+					continue;
+				}
+			} else {
+				v = settle.dequeue();
+			}
+			for (int i=0; i < deg[v]; i++) {
+				int y = adj[v][i];
+				if (stampA[y] == g && d[v] + 1 < d[y]) {
+					d[y] = d[v] + 1;
+					settle.enqueue(y);
+				}
+			}
+		}
+	}
+
+	// whether x has a friend one step closer to the landmark that is not marked affected
+	private boolean supported(int[] d, int x, int g) {
+		for (int i=0; i < deg[x]; i++) {
+			int z = adj[x][i];
+			if (d[z] != INF && d[z] == d[x] - 1 && (g == -1 || stampA[z] != g)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void merge(int a, int b, int school) {
+		int small = compSize[a] < compSize[b] ? a : b;
+		int big = small == a ? b : a;
+		for (int i=0; i < memberCount[small]; i++) {
+			int v = members[small][i];
+			if (live(small, i)) {
+				comp[v] = big;
+				addMember(big, v);
+			}
+		}
+		compSize[big] += compSize[small];
+		compSize[small] = 0;
+		members[small] = null;
+		memberCount[small] = 0;
+		schoolComps.get(school).remove(small);
+		if (freeCount == freeIds.length) {
+			freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+		}
+		freeIds[freeCount++] = small;
+	}
+
+	private void addMember(int c, int v) {
+		if (memberCount[c] == members[c].length) {
+			members[c] = Arrays.copyOf(members[c], Math.max(4, memberCount[c] * 2));
+		}
+		pos[v] = memberCount[c];
+		members[c][memberCount[c]++] = v;
+	}
+
+	// a person who left a clique and came back has an old entry too; only the newest counts
+	private boolean live(int c, int i) {
+		int v = members[c][i];
+		return comp[v] == c && pos[v] == i;
+	}
+
+	/**
+	 * Searches the clique from both ends of a removed friendship, one person at a time from
+	 * each side. If one side runs out before meeting the other, it becomes a clique of its own.
+	 */
+	private void split(int u, int w) {
+		int c = comp[u];
+		int school = base.school[u];
+		int g = nextGen();
+		stampA[u] = g;
+		stampB[w] = g;
+		queueA[0] = u;
+		queueB[0] = w;
+		int headA = 0, tailA = 1, headB = 0, tailB = 1;
+		while (headA < tailA && headB < tailB) {
+			int v = queueA[headA++];
+			for (int i=0; i < deg[v]; i++) {
+				int y = adj[v][i];
+				if (base.school[y] != school) {
+					continue;
+				}
+				if (stampB[y] == g) {
+					return;
+				}
+				if (stampA[y] != g) {
+					stampA[y] = g;
+					queueA[tailA++] = y;
+				}
+			}
+			v = queueB[headB++];
+			for (int i=0; i < deg[v]; i++) {
+				int y = adj[v][i];
+				if (base.school[y] != school) {
+					continue;
+				}
+				if (stampA[y] == g) {
+					return;
+				}
+				if (stampB[y] != g) {
+					stampB[y] = g;
+					queueB[tailB++] = y;
+				}
+			}
+		}
+		int[] piece = headA == tailA ? queueA : queueB;
+		int size = headA == tailA ? tailA : tailB;
+		int fresh;
+		if (freeCount > 0) {
+			fresh = freeIds[--freeCount];
+		} else {
+			if (compCount == members.length) {
+				members = Arrays.copyOf(members, compCount * 2);
+				memberCount = Arrays.copyOf(memberCount, compCount * 2);
+				compSize = Arrays.copyOf(compSize, compCount * 2);
+			}
+			fresh = compCount++;
+		}
+		members[fresh] = Arrays.copyOf(piece, size);
+		memberCount[fresh] = compSize[fresh] = size;
+		for (int i=0; i < size; i++) {
+			comp[piece[i]] = fresh;
+			pos[piece[i]] = i;
+		}
+		compSize[c] -= size;
+		schoolComps.get(school).add(fresh);
+		if (memberCount[c] > 2 * compSize[c]) {
+			// drop the stale entries
+			int kept = 0;
+			for (int i=0; i < memberCount[c]; i++) {
+				if (live(c, i)) {
+					pos[members[c][i]] = kept;
+					members[c][kept++] = members[c][i];
+				}
+			}
+			memberCount[c] = kept;
+		}
+	}
+
+	/**
+	 * @return Frozen copy of the graph as of the latest change
+	 */
+	public CsrGraph snapshot() {
+		int[] offsets = new int[n+1];
+		for (int v=0; v < n; v++) {
+			offsets[v+1] = offsets[v] + deg[v];
+		}
+		int[] neighbors = new int[offsets[n]];
+		String[] names = new String[n];
+		for (int v=0; v < n; v++) {
+			System.arraycopy(adj[v], 0, neighbors, offsets[v], deg[v]);
+			names[v] = base.name(v);
+		}
+		String[] schoolNames = new String[base.schoolCount()];
+		for (int s=0; s < schoolNames.length; s++) {
+			schoolNames[s] = base.schoolName(s);
+		}
+		return new CsrGraph(offsets, neighbors, base.school.clone(), names, schoolNames);
+	}
+
+	/**
+	 * Finds all cliques of students in a given school, as of the latest change.
+	 *
+	 * @param school Name of school
+	 * @return Array list of clique array lists, empty if there is no student in the school;
+	 *         null if school is null or empty
+	 */
+	public ArrayList<ArrayList<String>> cliques(String school) {
+		if (school == null || school.length() == 0) {
+			return null;
+		}
+		ArrayList<ArrayList<String>> answer = new ArrayList<ArrayList<String>>();
+		int s = base.schoolId(school.toLowerCase());
+		if (s == -1) {
+			return answer;
+		}
+		for (int c : schoolComps.get(s)) {
+			ArrayList<String> clique = new ArrayList<String>(compSize[c]);
+			for (int i=0; i < memberCount[c]; i++) {
+				if (live(c, i)) {
+					clique.add(base.name(members[c][i]));
+				}
+			}
+			answer.add(clique);
+		}
+		return answer;
+	}
+
+	/**
+	 * Bounds on the length of the shortest chain between two people, from the landmarks
+	 * alone.
+	 *
+	 * @param p1 Name of a person
+	 * @param p2 Name of a person
+	 * @return {lower, upper} number of friendships on the chain; upper is INF if no landmark
+	 *         reaches both, and lower is INF if they are known not to be connected
+	 */
+	public int[] distanceBounds(String p1, String p2) {
+		int[] b = landmarks.bounds(existing(p1), existing(p2));
+		return new int[] {b[0], b[1]};
+	}
+
+	/**
+	 * Finds the shortest chain of people from p1 to p2, as of the latest change.
+	 *
+	 * @param p1 Person with whom the chain originates
+	 * @param p2 Person at whom the chain terminates
+	 * @return The shortest chain from p1 to p2. Null if either does not exist or there is no
+	 *         path from p1 to p2
+	 */
+	public ArrayList<String> shortestChain(String p1, String p2) {
+		int s = index(p1), t = index(p2);
+		if (s == -1 || t == -1) {
+			return null;
+		}
+		int[] path;
+		int[] b = landmarks.bounds(s, t);
+		if (b[0] == INF) {
+			return null;
+		}
+		if (b[2] != -1 && b[0] == b[1]) {
+			path = landmarks.throughLandmark(s, t, b[2]);
+		} else {
+			path = search(s, t);
+			if (path == null) {
+				return null;
+			}
+		}
+		ArrayList<String> chain = new ArrayList<String>(path.length);
+		for (int v : path) {
+			chain.add(base.name(v));
+		}
+		return chain;
+	}
+
+	/**
+	 * Bounds and chains from the distances kept in dist, walking the current friendships.
+	 */
+	private class Landmarks extends LandmarkDistances {
+
+		Landmarks(int[] landmarks) {
+			super(landmarks);
+		}
+
+		int d(int v, int k) {
+			return dist[k][v];
+		}
+
+		int closer(int v, int k) {
+			int[] d = dist[k];
+			for (int i=0; i < deg[v]; i++) {
+				if (d[adj[v][i]] == d[v] - 1) {
+					return adj[v][i];
+				}
+			}
+			throw new IllegalStateException("landmark distances out of date at " + base.name(v));
+		}
+	}
+
+	/**
+	 * Bidirectional BFS, a full level of the smaller frontier at a time.
+	 */
+	private int[] search(int s, int t) {
+		if (s == t) {
+			return new int[] {s};
+		}
+		int g = nextGen();
+		stampA[s] = g;
+		predA[s] = -1;
+		queueA[0] = s;
+		stampB[t] = g;
+		predB[t] = -1;
+		queueB[0] = t;
+		int headA = 0, tailA = 1, headB = 0, tailB = 1;
+		while (headA < tailA && headB < tailB) {
+			boolean forward = tailA - headA <= tailB - headB;
+			int[] stamp = forward ? stampA : stampB, other = forward ? stampB : stampA;
+			int[] pred = forward ? predA : predB, queue = forward ? queueA : queueB;
+			int head = forward ? headA : headB, tail = forward ? tailA : tailB;
+			int end = tail;
+			// every meeting on this level gives a chain of the same length
+			for (; head < end; head++) {
+				int v = queue[head];
+				for (int i=0; i < deg[v]; i++) {
+					int w = adj[v][i];
+					if (stamp[w] == g) {
+						continue;
+					}
+					stamp[w] = g;
+					pred[w] = v;
+					queue[tail++] = w;
+					if (other[w] == g) {
+						return join(w);
+					}
+				}
+			}
+			if (forward) {
+				headA = head;
+				tailA = tail;
+			} else {
+				headB = head;
+				tailB = tail;
+			}
+		}
+		return null;
+	}
+
+	private int[] join(int meet) {
+		ArrayList<Integer> path = new ArrayList<Integer>();
+		for (int v=meet; v != -1; v=predA[v]) {
+			path.add(v);
+		}
+		Collections.reverse(path);
+		for (int v=predB[meet]; v != -1; v=predB[v]) {
+			path.add(v);
+		}
+		int[] result = new int[path.size()];
+		for (int i=0; i < result.length; i++) {
+			result[i] = path.get(i);
+		}
+		return result;
+	}
+}
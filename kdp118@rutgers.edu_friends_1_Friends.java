@@ -1,9 +1,12 @@
 package friends;
 
 import java.util.ArrayList;
-
-import structures.Queue;
-import structures.Stack;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class Friends {
 	{
@@ -30,6 +33,10 @@ public class Friends {
 	 * and ending with p2. Each pair (n1,n2) of consecutive names in
 	 * the returned chain is an edge in the graph.
 	 * 
+	 * The graph is converted to its CSR form on every call, so the answer reflects the
+	 * current Friend lists; to answer many queries, build the CSR form once with CsrGraph.of
+	 * and use the CsrGraph overload.
+	 * 
 	 * @param g Graph for which shortest chain is to be found.
 	 * @param p1 Person with whom the chain originates
 	 * @param p2 Person at whom the chain terminates
@@ -39,7 +46,26 @@ public class Friends {
 	public static ArrayList<String> shortestChain(Graph g, String p1, String p2) 
 	{
 
-ArrayList<String> shortest = new ArrayList<>();
+// if any input null, return null
+if (g == null)
+{
+   return null;
+}
+return shortestChain(CsrGraph.of(g), p1, p2);
+}
+
+	/**
+	 * Finds the shortest chain of people from p1 to p2 in the CSR form of a graph, with a
+	 * bidirectional search (see ChainSearch). Build the CSR form once with CsrGraph.of to
+	 * answer many queries.
+	 * 
+	 * @param g CSR graph for which shortest chain is to be found.
+	 * @param p1 Person with whom the chain originates
+	 * @param p2 Person at whom the chain terminates
+	 * @return The shortest chain from p1 to p2. Null if there is no path from p1 to p2
+	 */
+	public static ArrayList<String> shortestChain(CsrGraph g, String p1, String p2) 
+	{
 
 // if any input null or empty, return null
 if (g == null || p1 == null || p2 == null || p1.length() == 0 || p2.length() == 0)
@@ -48,105 +74,199 @@ if (g == null || p1 == null || p2 == null || p1.length() == 0 || p2.length() ==
 }
 
 // set to lowercase just in case
-p1 = p1.toLowerCase();
-p2 = p2.toLowerCase();
-
-// if going to itself, just have itself in the chain
-if (p1.equals(p2))
-{
-   shortest.add(g.members[g.map.get(p1)].name);
-   return shortest;
-}
+int start = g.index(p1.toLowerCase());
+int target = g.index(p2.toLowerCase());
 
 // check if they exist, return null if not
-if (g.map.get(p1) == null || g.map.get(p2) == null)
+if (start == -1 || target == -1)
 {
    System.out.println("P1 or P2 does not exist!");
    return null;
 }
 
-// initialize queues and arrays
-Queue<Integer> queue = new Queue<>();
-int[] dist = new int[g.members.length];
-int[] pred = new int[g.members.length];
-boolean[] visited = new boolean[g.members.length]; // number of vertices
+// search from both ends at once
+int[] path = ChainSearch.path(g, start, target);
 
-// fill in values of arrays
-for (int i = 0; i < visited.length; i++)
+// check if island and never reached
+if (path == null)
 {
-   visited[i] = false;
-   dist[i] = Integer.MAX_VALUE; // set distance to infinity
-   pred[i] = -1;
+   System.out.println("Cannot reach!");
+   return null;
 }
 
-// initialize the starting person
-int startIndex = g.map.get(p1);
-Person startPerson = g.members[startIndex];
-
-// mark visited as true for first vertex and distance to itself as 0
-visited[startIndex] = true;
-dist[startIndex] = 0; // 0 distance from itself
+// then take the names along the path
+ArrayList<String> shortest = new ArrayList<>(path.length);
+for (int v : path)
+{
+   shortest.add(g.name(v));
+}
+return shortest;
+}
 
-// enqueue first person and begin loop
-queue.enqueue(startIndex);
+	/**
+	 * Finds the shortest chain of people from p1 to p2 with a parallel breadth-first search
+	 * (see ParallelBfs), for very large graphs where the two people may be far apart.
+	 * 
+	 * @param g CSR graph for which shortest chain is to be found.
+	 * @param p1 Person with whom the chain originates
+	 * @param p2 Person at whom the chain terminates
+	 * @param pool Pool on which the search runs
+	 * @return The shortest chain from p1 to p2. Null if there is no path from p1 to p2
+	 */
+	public static ArrayList<String> shortestChain(CsrGraph g, String p1, String p2, ForkJoinPool pool) 
+	{
 
-while (!queue.isEmpty())
+// if any input null or empty, return null
+if (g == null || p1 == null || p2 == null || p1.length() == 0 || p2.length() == 0)
 {
-   // get current person
-   int v = queue.dequeue(); // current vertex index
-   Person p = g.members[v];
+   return null;
+}
+int start = g.index(p1.toLowerCase());
+int target = g.index(p2.toLowerCase());
+if (start == -1 || target == -1)
+{
+   return null;
+}
 
-   // go through all neighbors of this person
-   for (Friend ptr = p.first; ptr != null; ptr = ptr.next)
-   {
-    int fnum = ptr.fnum;
-
-    // if this person was not visited already
-    if (!visited[fnum])
-    {
-     // update dist, pred, and visited
-     dist[fnum] = dist[v] + 1; // one edge greater than
-            // originating vertex
-     pred[fnum] = v;
-     visited[fnum] = true;
-     queue.enqueue(fnum); // enqueue
-    }
-   }
+// search level by level until the level that reaches p2
+ParallelBfs bfs = new ParallelBfs(g, -1, pool);
+bfs.search(start, target);
+if (!bfs.visited(target))
+{
+   return null;
+}
+ArrayList<String> shortest = new ArrayList<>();
+for (int v : bfs.path(target))
+{
+   shortest.add(g.name(v));
+}
+return shortest;
 }
 
-// get path starting from p2
-Stack<String> path = new Stack<>();
-int spot = g.map.get(p2);
+	/**
+	 * Finds the shortest chain of people from p1 to p2 with the help of precomputed landmark
+	 * distances (see LandmarkOracle), which settle many queries without searching and prune
+	 * the search for the rest.
+	 *
+	 * @param oracle Landmark distances of the graph in which the chain is to be found
+	 * @param p1 Person with whom the chain originates
+	 * @param p2 Person at whom the chain terminates
+	 * @return The shortest chain from p1 to p2. Null if there is no path from p1 to p2
+	 */
+	public static ArrayList<String> shortestChain(LandmarkOracle oracle, String p1, String p2)
+	{
 
-// check if island and never reached
-if (!visited[spot])
+// if any input null or empty, return null
+if (oracle == null || p1 == null || p2 == null || p1.length() == 0 || p2.length() == 0)
+{
+   return null;
+}
+CsrGraph g = oracle.graph();
+int start = g.index(p1.toLowerCase());
+int target = g.index(p2.toLowerCase());
+if (start == -1 || target == -1)
 {
-   System.out.println("Cannot reach!");
    return null;
+}
+int[] path = oracle.path(start, target);
+if (path == null)
+{
+   return null;
+}
+ArrayList<String> shortest = new ArrayList<>(path.length);
+for (int v : path)
+{
+   shortest.add(g.name(v));
+}
+return shortest;
 }
 
-// trace back predecessors and push into stack
-while (spot != -1)
+	/**
+	 * Finds the shortest chains of people from p1 to each of many targets.
+	 *
+	 * Like shortestChain(Graph, ...), this converts the graph on each call and so sees its
+	 * current friendships.
+	 *
+	 * @param g Graph for which shortest chains are to be found.
+	 * @param p1 Person with whom the chains originate
+	 * @param targets People at whom the chains terminate
+	 * @return Map from each target to its shortest chain from p1, null for a target that does
+	 *         not exist or cannot be reached. Null if p1 does not exist
+	 */
+	public static HashMap<String,ArrayList<String>> shortestChains(Graph g, String p1, Collection<String> targets)
+	{
+
+// if any input null, return null
+if (g == null)
 {
-   path.push(g.members[spot].name);
-   spot = pred[spot];
+   return null;
+}
+return shortestChains(CsrGraph.of(g), p1, targets);
 }
 
-// then take from the stack and add to arraylist
-while (!path.isEmpty())
+	/**
+	 * Finds the shortest chains of people from p1 to each of many targets in the CSR form of
+	 * a graph, with one breadth-first search from p1 that stops once every target is reached
+	 * (see ChainSearch.paths), instead of one search per target.
+	 *
+	 * @param g CSR graph for which shortest chains are to be found.
+	 * @param p1 Person with whom the chains originate
+	 * @param targets People at whom the chains terminate
+	 * @return Map from each target, in the order given, to its shortest chain from p1, null for
+	 *         a target that does not exist or cannot be reached. Null if p1 does not exist
+	 */
+	public static HashMap<String,ArrayList<String>> shortestChains(CsrGraph g, String p1, Collection<String> targets)
+	{
+
+// if any input null or empty, return null
+if (g == null || p1 == null || p1.length() == 0 || targets == null)
 {
-   shortest.add(path.pop());
+   return null;
+}
+int start = g.index(p1.toLowerCase());
+if (start == -1)
+{
+   return null;
 }
 
-return shortest;
+// look up the targets that exist, then search for all of them at once
+ArrayList<String> names = new ArrayList<>(targets.size());
+int[] found = new int[targets.size()];
+int count = 0;
+HashMap<String,ArrayList<String>> chains = new LinkedHashMap<>();
+for (String p2 : targets)
+{
+   chains.put(p2, null);
+   int target = p2 == null ? -1 : g.index(p2.toLowerCase());
+   if (target != -1)
+   {
+      names.add(p2);
+      found[count++] = target;
+   }
+}
+int[][] paths = ChainSearch.paths(g, start, Arrays.copyOf(found, count));
+for (int i = 0; i < count; i++)
+{
+   if (paths[i] == null)
+   {
+      continue;
+   }
+   ArrayList<String> shortest = new ArrayList<>(paths[i].length);
+   for (int v : paths[i])
+   {
+      shortest.add(g.name(v));
+   }
+   chains.put(names.get(i), shortest);
+}
+return chains;
 }
-		
 		/** COMPLETE THIS METHOD **/
 		
 		// FOLLOWING LINE IS A PLACEHOLDER TO MAKE COMPILER HAPPY
 		// CHANGE AS REQUIRED FOR YOUR IMPLEMENTATION
 
 	
+
 	
 	/**
 	 * Finds all cliques of students in a given school.
@@ -154,6 +274,9 @@ return shortest;
 	 * Returns an array list of array lists - each constituent array list contains
 	 * the names of all students in a clique.
 	 * 
+	 * Each call reads the current Friend lists; for many schools of an unchanging graph, use
+	 * cliques(CsrGraph, ...) on one CsrGraph.of instead.
+	 * 
 	 * @param g Graph for which cliques are to be found.
 	 * @param school Name of school
 	 * @return Array list of clique array lists. Null or empty array list if there is no student in the
@@ -162,8 +285,26 @@ return shortest;
 	public static ArrayList<ArrayList<String>> cliques(Graph g, String school) 
 	{
 
-// initialize answer arraylist
-ArrayList<ArrayList<String>> answer = new ArrayList<>();
+// if any input null, return null
+if (g == null)
+{
+   return null;
+}
+return cliques(CsrGraph.of(g), school);
+}
+
+	/**
+	 * Finds all cliques of students in a given school in the CSR form of a graph. The
+	 * cliques of every school are computed on the first call (see SchoolIndex), so later
+	 * calls only copy out their answer.
+	 * 
+	 * @param g CSR graph for which cliques are to be found.
+	 * @param school Name of school
+	 * @return Array list of clique array lists. Null or empty array list if there is no student in the
+	 *         given school
+	 */
+	public static ArrayList<ArrayList<String>> cliques(CsrGraph g, String school) 
+	{
 
 // check nulls and empties
 if (g == null || school == null || school.length() == 0)
@@ -171,66 +312,49 @@ if (g == null || school == null || school.length() == 0)
    return null;
 }
 
-// make lowercase just in case
-school = school.toLowerCase();
+// make lowercase just in case, and look the school up in the graph's index
+return g.schoolIndex().cliques(school.toLowerCase());
+}
 
-// make visited and mark all as false
-boolean[] visited = new boolean[g.members.length];
-for (int i = 0; i < visited.length; i++)
+	/**
+	 * Finds all cliques of students in a given school with parallel breadth-first searches
+	 * (see ParallelBfs). Students within a clique are not in any particular order.
+	 * 
+	 * @param g CSR graph for which cliques are to be found.
+	 * @param school Name of school
+	 * @param pool Pool on which the searches run
+	 * @return Array list of clique array lists. Null or empty array list if there is no student in the
+	 *         given school
+	 */
+	public static ArrayList<ArrayList<String>> cliques(CsrGraph g, String school, ForkJoinPool pool) 
+	{
+ArrayList<ArrayList<String>> answer = new ArrayList<>();
+if (g == null || school == null || school.length() == 0)
 {
-   visited[i] = false;
+   return null;
+}
+int id = g.schoolId(school.toLowerCase());
+if (id == -1)
+{
+   return answer;
 }
 
-// driver for all the members
-for (Person member : g.members)
+// one search per clique; visited marks carry over between searches
+ParallelBfs bfs = new ParallelBfs(g, id, pool);
+for (int s = 0; s < g.size(); s++)
 {
-   // if it hasn't been visited and is a member of this school
-   if (!visited[g.map.get(member.name)] && member.school != null && member.school.equals(school))
+   if (g.school[s] == id && bfs.search(s, -1) > 0)
    {
-
-    // initialize
-    Queue<Integer> queue = new Queue<>();
-    ArrayList<String> clique = new ArrayList<>();
-
-    // initialize person and set visited to true
-    int startIndex = g.map.get(member.name);
-    visited[startIndex] = true;
-
-    // enqueue and add into the clique arraylist
-    queue.enqueue(startIndex);
-    clique.add(member.name);
-
-    while (!queue.isEmpty())
-    {
-     // get person
-     int v = queue.dequeue(); // current vertex index
-     Person p = g.members[v];
-
-     // loop through all neighbors
-     for (Friend ptr = p.first; ptr != null; ptr = ptr.next)
-     {
-      // get the friend
-      int fnum = ptr.fnum;
-      Person fr = g.members[fnum];
-
-      // if it was unvisited and a member of the school
-      if (!visited[fnum] && fr.school != null && fr.school.equals(school))
+      ArrayList<String> clique = new ArrayList<>();
+      for (int v : bfs.reached())
       {
-       // mark as visited, enqueue, and add to clique
-       visited[fnum] = true;
-       queue.enqueue(fnum);
-       clique.add(g.members[fnum].name);
+         clique.add(g.name(v));
       }
-     }
-    }
-    // add arraylist to answers list
-    answer.add(clique);
+      answer.add(clique);
    }
 }
-
 return answer;
 }
-		
 		/** COMPLETE THIS METHOD **/
 		
 		// FOLLOWING LINE IS A PLACEHOLDER TO MAKE COMPILER HAPPY
@@ -242,141 +366,41 @@ return answer;
 	/**
 	 * Finds and returns all connectors in the graph.
 	 * 
+	 * Each call reads the current Friend lists; connectors(CsrGraph) reuses one conversion.
+	 * 
 	 * @param g Graph for which connectors needs to be found.
 	 * @return Names of all connectors. Null or empty array list if there are no connectors.
 	 */
 	public static ArrayList<String> connectors(Graph g){
 
-// initalize
-boolean[] visited = new boolean[g.members.length]; // all set to false
-               // automatically
-int[] dfsnum = new int[g.members.length];
-int[] back = new int[g.members.length];
-ArrayList<String> answer = new ArrayList<>();
-
-// driver
-for (Person member : g.members)
-{
-   // if it hasn't been visited
-   if (!visited[g.map.get(member.name)])
-   {
-    // reset dfsnum for different islands and dfs call
-    dfsnum = new int[g.members.length];
-    dfs(g.map.get(member.name), g.map.get(member.name), g, visited, dfsnum, back, answer);
-   }
-}
-
-// error checking below:
-
-// check if only have one edge, then cannot be a connector
-for (int i = 0; i < answer.size(); i++)
-{
-   Friend ptr = g.members[g.map.get(answer.get(i))].first;
-
-   int count = 0;
-   while (ptr != null)
-   {
-    ptr = ptr.next;
-    count++;
-   }
-
-   // if no edge or only one edge
-   if (count == 0 || count == 1)
-   {
-    answer.remove(i);
-   }
-}
-
-// check if something has only one neighbor, then neighbor must be
-// connector
-for (Person member : g.members)
+// if input null, return null
+if (g == null)
 {
-   if ((member.first.next == null && !answer.contains(g.members[member.first.fnum].name)))
-   {
-    answer.add(g.members[member.first.fnum].name);
-   }
-}
-
-return answer;
-}
-
-// find size of dfsnum because counting up and passing it back in recursion
-// does not work
-// to assign the dfsnum and back number
-private static int sizeArr(int[] arr)
-{
-int count = 0;
-for (int i = 0; i < arr.length; i++)
-{
-   if (arr[i] != 0)
-   {
-    count++;
-   }
+   return null;
 }
-return count;
+return connectors(CsrGraph.of(g));
 }
 
-// recursive dfs
-private static void dfs(int v, int start, Graph g, boolean[] visited, int[] dfsnum, int[] back,
-   ArrayList<String> answer)
-{
-// get the person and mark as visited
-Person p = g.members[v];
-visited[g.map.get(p.name)] = true;
-int count = sizeArr(dfsnum) + 1;
+	/**
+	 * Finds and returns all connectors in the CSR form of a graph, in index order
+	 * (see ArticulationPoints).
+	 * 
+	 * @param g CSR graph for which connectors needs to be found.
+	 * @return Names of all connectors. Null or empty array list if there are no connectors.
+	 */
+	public static ArrayList<String> connectors(CsrGraph g){
 
-// if not set, set it
-if (dfsnum[v] == 0 && back[v] == 0)
+if (g == null)
 {
-   dfsnum[v] = count;
-   back[v] = dfsnum[v];
+   return null;
 }
-
-// go through neighbors
-for (Friend ptr = p.first; ptr != null; ptr = ptr.next)
+BitSet found = ArticulationPoints.find(g);
+ArrayList<String> answer = new ArrayList<>(found.cardinality());
+for (int v = found.nextSetBit(0); v >= 0; v = found.nextSetBit(v + 1))
 {
-   // if not visited
-   if (!visited[ptr.fnum])
-   {
-
-    // recursive call on neighbors
-    dfs(ptr.fnum, start, g, visited, dfsnum, back, answer);
-
-    // after come back, check
-    if (dfsnum[v] > back[ptr.fnum])
-    {
-     // just change the back[v] num
-     back[v] = Math.min(back[v], back[ptr.fnum]);
-    } else
-    {
-     // trying to fix if starting point has two edges but not a
-     // connector and other issues fixed with this
-     if (Math.abs(dfsnum[v] - back[ptr.fnum]) < 1 && Math.abs(dfsnum[v] - dfsnum[ptr.fnum]) <= 1
-       && back[ptr.fnum] == 1 && v == start)
-     {
-      // don't add if both 1's
-      continue;
-     }
-
-     // if these conditions, IS A CONNECTOR
-     if (dfsnum[v] <= back[ptr.fnum] && (v != start || back[ptr.fnum] == 1))
-     { // not the startng point
-      if (!answer.contains(g.members[v].name))
-      {
-       // if not already in there, add the connector to the
-       // list
-       answer.add(g.members[v].name);
-      }
-     }
-
-    }
-   } else
-   {
-    // if already visited, update back[v]
-    back[v] = Math.min(back[v], dfsnum[ptr.fnum]);
-   }
+   answer.add(g.name(v));
 }
-return;
+return answer;
 }
 
 }
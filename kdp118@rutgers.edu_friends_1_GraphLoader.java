@@ -0,0 +1,257 @@
+package friends;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Loads graphs straight into CsrGraph form, without Person and Friend objects.
+ *
+ * readText parses the Graph input format (number of people, then name|y|school or name|n
+ * for each, then one name|name line per friendship) from a memory-mapped file. Names are
+ * looked up from the raw bytes, friendships are first counted per person and then filled
+ * into the neighbor array, and the friends of each person come out in the same order as in
+ * the Graph built from the same file. Names are lowercased in ASCII only.
+ *
+ * writeSnapshot saves a graph in a binary form that readSnapshot maps back: the int arrays
+ * are copied out in bulk, and the names and their hash index are used in place, so a large
+ * graph is ready for queries in about the time it takes to read its arrays.
+ */
+public class GraphLoader {
+
+	// bytes mapped at a time while parsing text
+	static final long MAP_WINDOW = 1L << 30;
+
+	// ints mapped at a time while reading a snapshot
+	static final int INT_WINDOW = 1 << 28;
+
+	static final int MAGIC = 0x46524e44;
+	static final int VERSION = 1;
+
+	private final NameTable.Builder people = new NameTable.Builder();
+	private final NameTable.Builder schools = new NameTable.Builder();
+	private int[] school;
+	private int n = -1;
+	// endpoints of each friendship, in file order
+	private int[] edges = new int[1024];
+	private int edgeCount;
+
+	private GraphLoader() {
+	}
+
+	/**
+	 * Reads a graph in the Graph text format.
+	 *
+	 * @param file File with the graph
+	 * @return The graph
+	 * @throws IOException If there is a problem with the input
+	 */
+	public static CsrGraph readText(Path file) throws IOException {
+		GraphLoader loader = new GraphLoader();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long offset = 0;
+			while (offset < size) {
+				long length = Math.min(MAP_WINDOW, size - offset);
+				ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+				int consumed = loader.parseLines(window, offset + length == size);
+				if (consumed == 0) {
+					throw new IOException("line longer than " + MAP_WINDOW + " bytes at offset " + offset);
+				}
+				offset += consumed;
+			}
+		}
+		return loader.build();
+	}
+
+	private int parseLines(ByteBuffer buf, boolean eof) throws IOException {
+		int limit = buf.limit();
+		int lineStart = 0;
+		while (lineStart < limit) {
+			int lineEnd = lineStart;
+			while (lineEnd < limit && buf.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			if (lineEnd == limit && !eof) {
+				return lineStart;
+			}
+			parseLine(buf, lineStart, lineEnd);
+			lineStart = lineEnd + 1;
+		}
+		return limit;
+	}
+
+	private void parseLine(ByteBuffer buf, int from, int to) throws IOException {
+		while (from < to && buf.get(from) <= ' ') {
+			from++;
+		}
+		while (to > from && buf.get(to-1) <= ' ') {
+			to--;
+		}
+		if (from == to) {
+			return;
+		}
+		if (n == -1) {
+			n = 0;
+			for (int i=from; i < to; i++) {
+				int digit = buf.get(i) - '0';
+				if (digit < 0 || digit > 9) {
+					throw new IOException("number of people expected");
+				}
+				n = n * 10 + digit;
+			}
+			school = new int[n];
+			return;
+		}
+		int bar = from;
+		while (bar < to && buf.get(bar) != '|') {
+			bar++;
+		}
+		if (bar == to) {
+			throw new IOException("'|' expected");
+		}
+		if (people.size() < n) {
+			// name|y|school or name|n
+			int v = people.add(buf, from, bar, true);
+			boolean student = bar + 1 < to && NameTable.toLower(buf.get(bar+1)) == 'y';
+			if (student) {
+				if (bar + 2 >= to || buf.get(bar+2) != '|') {
+					throw new IOException("school expected");
+				}
+				school[v] = schools.intern(buf, bar + 3, to, true);
+			} else {
+				school[v] = -1;
+			}
+			return;
+		}
+		int a = people.find(buf, from, bar, true);
+		int b = people.find(buf, bar + 1, to, true);
+		if (a == -1 || b == -1) {
+			throw new IOException("unknown person in friendship line");
+		}
+		if (edgeCount + 2 > edges.length) {
+			edges = Arrays.copyOf(edges, edges.length * 2);
+		}
+		edges[edgeCount++] = a;
+		edges[edgeCount++] = b;
+	}
+
+	private CsrGraph build() throws IOException {
+		if (people.size() < n) {
+			throw new IOException("expected " + n + " people, found " + people.size());
+		}
+		if (n == -1) {
+			n = 0;
+			school = new int[0];
+		}
+		// count, then fill each person's range from the back, as Graph prepends friends
+		int[] offsets = new int[n+1];
+		for (int i=0; i < edgeCount; i++) {
+			offsets[edges[i]+1]++;
+		}
+		for (int v=0; v < n; v++) {
+			offsets[v+1] += offsets[v];
+		}
+		int[] cursor = Arrays.copyOfRange(offsets, 1, n + 1);
+		int[] neighbors = new int[edgeCount];
+		for (int i=0; i < edgeCount; i += 2) {
+			int a = edges[i], b = edges[i+1];
+			neighbors[--cursor[a]] = b;
+			neighbors[--cursor[b]] = a;
+		}
+		return new CsrGraph(offsets, neighbors, school, people.build(), schools.build());
+	}
+
+	/**
+	 * Saves a graph in binary form.
+	 *
+	 * @param g Graph to save
+	 * @param file File to write
+	 * @throws IOException If the file cannot be written
+	 */
+	public static void writeSnapshot(CsrGraph g, Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(g.size());
+			out.writeInt(g.neighbors.length);
+			writeInts(out, g.offsets);
+			writeInts(out, g.neighbors);
+			writeInts(out, g.school);
+			writeNames(out, g.names);
+			writeNames(out, g.schools);
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] a) throws IOException {
+		for (int x : a) {
+			out.writeInt(x);
+		}
+	}
+
+	private static void writeNames(DataOutputStream out, NameTable t) throws IOException {
+		out.writeInt(t.size());
+		out.writeInt(t.slots.length);
+		out.writeInt(t.starts[t.size()]);
+		writeInts(out, t.starts);
+		writeInts(out, t.slots);
+		for (int i=0; i < t.starts[t.size()]; i++) {
+			out.writeByte(t.bytes.get(i));
+		}
+	}
+
+	/**
+	 * Maps a graph saved by writeSnapshot.
+	 *
+	 * @param file Snapshot file
+	 * @return The graph
+	 * @throws IOException If the file cannot be read or is not a snapshot
+	 */
+	public static CsrGraph readSnapshot(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 16);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException("not a graph snapshot: " + file);
+			}
+			int n = header.getInt(8);
+			int m = header.getInt(12);
+			long[] pos = {16};
+			int[] offsets = readInts(channel, pos, n + 1);
+			int[] neighbors = readInts(channel, pos, m);
+			int[] school = readInts(channel, pos, n);
+			NameTable names = readNames(channel, pos);
+			NameTable schools = readNames(channel, pos);
+			return new CsrGraph(offsets, neighbors, school, names, schools);
+		}
+	}
+
+	private static int[] readInts(FileChannel channel, long[] pos, int count) throws IOException {
+		int[] a = new int[count];
+		for (int done=0; done < count; ) {
+			int chunk = Math.min(INT_WINDOW, count - done);
+			IntBuffer ints = channel.map(FileChannel.MapMode.READ_ONLY, pos[0], 4L * chunk).asIntBuffer();
+			ints.get(a, done, chunk);
+			done += chunk;
+			pos[0] += 4L * chunk;
+		}
+		return a;
+	}
+
+	private static NameTable readNames(FileChannel channel, long[] pos) throws IOException {
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, pos[0], 12);
+		int count = header.getInt(0), slotCount = header.getInt(4), byteCount = header.getInt(8);
+		pos[0] += 12;
+		int[] starts = readInts(channel, pos, count + 1);
+		int[] slots = readInts(channel, pos, slotCount);
+		ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, pos[0], byteCount);
+		pos[0] += byteCount;
+		return new NameTable(bytes, starts, slots);
+	}
+}
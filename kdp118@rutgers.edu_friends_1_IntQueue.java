@@ -0,0 +1,114 @@
+package structures;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Queue of primitive int values, in a ring buffer that doubles when full. Unlike
+ * Queue&lt;Integer&gt; an enqueue neither boxes nor allocates a node, and clear() keeps the
+ * array so an instance can be reused from one traversal to the next.
+ */
+public class IntQueue {
+
+	// items are items[head], items[head+1], ... (mod length); the length is a power of two
+	private int[] items;
+	private int head;
+	private int size;
+
+	/**
+	 * Initializes queue to empty
+	 */
+	public IntQueue() {
+		this(16);
+	}
+
+	/**
+	 * Initializes queue to empty with room for the given number of items
+	 *
+	 * @param capacity Number of items that can be enqueued before the array grows
+	 */
+	public IntQueue(int capacity) {
+		int length = 1;
+		while (length < capacity) {
+			length *= 2;
+		}
+		items = new int[length];
+	}
+
+	/**
+	 * Adds an item to the rear of this queue
+	 *
+	 * @param item Item to be enqueued
+	 */
+	public void enqueue(int item) {
+		if (size == items.length) {
+			grow();
+		}
+		items[(head + size) & (items.length - 1)] = item;
+		size++;
+	}
+
+	// unrolls the ring into a twice as long array, starting at 0
+	private void grow() {
+		int[] bigger = new int[items.length * 2];
+		int first = items.length - head;
+		System.arraycopy(items, head, bigger, 0, first);
+		System.arraycopy(items, 0, bigger, first, head);
+		items = bigger;
+		head = 0;
+	}
+
+	/**
+	 * Removes the item at the front of this queue, and returns it
+	 *
+	 * @return Item at front
+	 * @throws NoSuchElementException If queue is empty
+	 */
+	public int dequeue() throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException("can't dequeue from an empty queue");
+		}
+		int item = items[head];
+		head = (head + 1) & (items.length - 1);
+		size--;
+		return item;
+	}
+
+	/**
+	 * Returns the item at the front of this queue, without removing it
+	 *
+	 * @return Item at front
+	 * @throws NoSuchElementException If queue is empty
+	 */
+	public int peek() throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException("can't peek into an empty queue");
+		}
+		return items[head];
+	}
+
+	/**
+	 * Tells if queue is empty
+	 *
+	 * @return True if queue is empty, false if not
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of items in this queue
+	 *
+	 * @return Number of items
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Empties the queue, keeping its array for reuse
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+}
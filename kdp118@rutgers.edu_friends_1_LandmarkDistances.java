@@ -0,0 +1,143 @@
+package friends;
+
+import java.util.Arrays;
+
+/**
+ * Distances from a few landmark people to everyone, and what they tell about chains: for
+ * any two people s and t and landmark L, |d(s,L)-d(t,L)| <= d(s,t) <= d(s,L)+d(L,t), and a
+ * chain through L can be read off the distances by walking downhill from s and from t.
+ *
+ * Subclasses decide how distances are stored and kept up to date (LandmarkOracle for a
+ * frozen graph, DynamicFriends for a changing one); landmark choice, bounds and chains
+ * through a landmark are shared here so the two always agree.
+ */
+abstract class LandmarkDistances {
+
+	static final int DEFAULT_LANDMARKS = 16;
+
+	static final int INF = Integer.MAX_VALUE;
+
+	// person index of each landmark
+	final int[] landmarks;
+
+	LandmarkDistances(int[] landmarks) {
+		this.landmarks = landmarks;
+	}
+
+	/**
+	 * Picks landmarks: the people with the most friends first, skipping friends of landmarks
+	 * already chosen so they spread over the graph, then filling up with the skipped people
+	 * if there are not enough.
+	 *
+	 * @param g Graph to pick from
+	 * @param count Number of landmarks wanted
+	 * @return Indexes of min(count, g.size()) landmarks
+	 */
+	static int[] choose(CsrGraph g, int count) {
+		int n = g.size();
+		count = Math.min(count, n);
+		long[] order = new long[n];
+		for (int v=0; v < n; v++) {
+			order[v] = ((long) (Integer.MAX_VALUE - g.degree(v)) << 32) | v;
+		}
+		Arrays.sort(order);
+		int[] chosen = new int[count];
+		boolean[] taken = new boolean[n], near = new boolean[n];
+		int c = 0;
+		for (int i=0; i < n && c < count; i++) {
+			int v = (int) order[i];
+			if (near[v]) {
+				continue;
+			}
+			chosen[c++] = v;
+			taken[v] = near[v] = true;
+			for (int e=g.offsets[v]; e < g.offsets[v+1]; e++) {
+				near[g.neighbors[e]] = true;
+			}
+		}
+		for (int i=0; i < n && c < count; i++) {
+			int v = (int) order[i];
+			if (!taken[v]) {
+				chosen[c++] = v;
+				taken[v] = true;
+			}
+		}
+		return chosen;
+	}
+
+	/**
+	 * @return Distance from person v to landmark k, INF if not connected
+	 */
+	abstract int d(int v, int k);
+
+	/**
+	 * @return A friend of v one step closer to landmark k than v
+	 * @throws IllegalStateException If v has none, so the distances are out of date
+	 */
+	abstract int closer(int v, int k);
+
+	/**
+	 * Bounds on the length of the shortest chain between two people, in O(K) time.
+	 *
+	 * @return {lower, upper, landmark giving upper}; upper is INF and the landmark -1 if no
+	 *         landmark reaches both, and lower is INF if they are known not to be connected
+	 */
+	int[] bounds(int s, int t) {
+		int lower = 0, upper = INF, via = -1;
+		for (int k=0; k < landmarks.length; k++) {
+			int ds = d(s, k), dt = d(t, k);
+			if (ds == INF && dt == INF) {
+				continue;
+			}
+			if (ds == INF || dt == INF) {
+				return new int[] {INF, INF, -1};
+			}
+			lower = Math.max(lower, Math.abs(ds - dt));
+			if (ds + dt < upper) {
+				upper = ds + dt;
+				via = k;
+			}
+		}
+		if (s == t) {
+			upper = 0;
+		}
+		return new int[] {lower, upper, via};
+	}
+
+	/**
+	 * Walks down landmark k's distances from s and from t and joins the two walks. The walks
+	 * may overlap near the landmark, so the loop, if any, is cut out.
+	 *
+	 * @return Indexes of the people on a chain from s to t through (or near) landmark k
+	 */
+	int[] throughLandmark(int s, int t, int k) {
+		if (s == t) {
+			return new int[] {s};
+		}
+		int[] path = new int[d(s, k) + d(t, k) + 1];
+		int i = 0;
+		for (int v=s; ; v=closer(v, k)) {
+			path[i++] = v;
+			if (d(v, k) == 0) {
+				break;
+			}
+		}
+		i = path.length - 1;
+		for (int v=t; d(v, k) != 0; v=closer(v, k)) {
+			path[i--] = v;
+		}
+		// a person on both walks is where they can be joined directly
+		int split = d(s, k);
+		for (int a=0; a < split; a++) {
+			for (int b=path.length-1; b > split; b--) {
+				if (path[a] == path[b]) {
+					int[] shorter = new int[path.length - (b - a)];
+					System.arraycopy(path, 0, shorter, 0, a);
+					System.arraycopy(path, b, shorter, a, path.length - b);
+					return shorter;
+				}
+			}
+		}
+		return path;
+	}
+}
@@ -0,0 +1,344 @@
+package friends;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed chain distances from a few landmark people of a CsrGraph. For any two people
+ * s and t and landmark L, |d(s,L)-d(t,L)| <= d(s,t) <= d(s,L)+d(L,t), so the landmark
+ * distances of s and t bound the length of their chain in O(K) time for K landmarks.
+ *
+ * Landmarks are chosen, and bounds and chains read off, the same way as in DynamicFriends
+ * (see LandmarkDistances). Distances are stored person by person, so the K distances of one
+ * person are adjacent, in a byte per entry while every distance fits, and a short (or, for
+ * extremely long chains, an int) per entry otherwise.
+ *
+ * The number of landmarks sets the trade-off: memory grows by n entries per landmark, and
+ * with more landmarks the bounds meet more often and prune more of the exact search. For the
+ * lowest latency, approximatePath returns a chain through the best landmark without any
+ * search, whose length is the upper bound.
+ *
+ * The oracle never changes after it is built and may be shared between threads.
+ */
+public class LandmarkOracle extends LandmarkDistances {
+
+	/**
+	 * Distance bound meaning "no chain" (lower) or "nothing known" (upper)
+	 */
+	public static final int INF = LandmarkDistances.INF;
+
+	private static final int SMALL_NONE = 0xFF, MID_NONE = 0xFFFF;
+
+	private final CsrGraph g;
+
+	// distance from person v to landmark k at [v*K + k]; exactly one of these is used
+	private byte[] small;
+	private short[] mid;
+	private int[] wide;
+
+	private final ThreadLocal<Search> scratch = new ThreadLocal<Search>() {
+		protected Search initialValue() {
+			return new Search(g.size());
+		}
+	};
+
+	/**
+	 * Builds the oracle with the default number of landmarks.
+	 *
+	 * @param g Graph to index
+	 */
+	public LandmarkOracle(CsrGraph g) {
+		this(g, DEFAULT_LANDMARKS);
+	}
+
+	/**
+	 * Builds the oracle with one breadth-first search per landmark, O(K(V+E)) time.
+	 *
+	 * @param g Graph to index
+	 * @param landmarkCount Number of landmarks K; more cost n entries of memory each but give
+	 *        tighter bounds
+	 */
+	public LandmarkOracle(CsrGraph g, int landmarkCount) {
+		super(choose(g, positive(landmarkCount)));
+		this.g = g;
+		int n = g.size();
+		int k = landmarks.length;
+		small = new byte[n * k];
+		Arrays.fill(small, (byte) SMALL_NONE);
+
+		int[] dist = new int[n];
+		int[] queue = new int[n];
+		for (int i=0; i < k; i++) {
+			Arrays.fill(dist, INF);
+			dist[landmarks[i]] = 0;
+			queue[0] = landmarks[i];
+			int tail = 1, far = 0;
+			for (int head=0; head < tail; head++) {
+				int v = queue[head];
+				for (int e=g.offsets[v]; e < g.offsets[v+1]; e++) {
+					int w = g.neighbors[e];
+					if (dist[w] == INF) {
+						dist[w] = dist[v] + 1;
+						far = dist[w];
+						queue[tail++] = w;
+					}
+				}
+			}
+			widen(far);
+			for (int j=0; j < tail; j++) {
+				int v = queue[j];
+				store(v*k + i, dist[v]);
+			}
+		}
+	}
+
+	private static int positive(int landmarkCount) {
+		if (landmarkCount < 1) {
+			throw new IllegalArgumentException("landmarkCount must be positive: " + landmarkCount);
+		}
+		return landmarkCount;
+	}
+
+	// moves to a wider entry if distances up to far do not fit
+	private void widen(int far) {
+		if (small != null && far >= SMALL_NONE) {
+			mid = new short[small.length];
+			for (int i=0; i < small.length; i++) {
+				int x = small[i] & 0xFF;
+				mid[i] = (short) (x == SMALL_NONE ? MID_NONE : x);
+			}
+			small = null;
+		}
+		if (mid != null && far >= MID_NONE) {
+			wide = new int[mid.length];
+			for (int i=0; i < mid.length; i++) {
+				int x = mid[i] & 0xFFFF;
+				wide[i] = x == MID_NONE ? INF : x;
+			}
+			mid = null;
+		}
+	}
+
+	private void store(int i, int d) {
+		if (small != null) {
+			small[i] = (byte) d;
+		} else if (mid != null) {
+			mid[i] = (short) d;
+		} else {
+			wide[i] = d;
+		}
+	}
+
+	int d(int v, int k) {
+		int i = v*landmarks.length + k;
+		if (small != null) {
+			int x = small[i] & 0xFF;
+			return x == SMALL_NONE ? INF : x;
+		}
+		if (mid != null) {
+			int x = mid[i] & 0xFFFF;
+			return x == MID_NONE ? INF : x;
+		}
+		return wide[i];
+	}
+
+	/**
+	 * @return The graph the oracle was built for
+	 */
+	public CsrGraph graph() {
+		return g;
+	}
+
+	/**
+	 * @return Indexes of the landmark people
+	 */
+	public int[] landmarks() {
+		return landmarks.clone();
+	}
+
+	/**
+	 * @return Bytes taken by the landmark distances
+	 */
+	public long memory() {
+		int width = small != null ? 1 : mid != null ? 2 : 4;
+		return (long) width * g.size() * landmarks.length;
+	}
+
+	/**
+	 * Bounds on the length of the shortest chain between two people, in O(K) time.
+	 *
+	 * @param s Person index
+	 * @param t Person index
+	 * @return {lower, upper, landmark} number of friendships on the chain, and the position in
+	 *         landmarks() of the landmark giving upper; upper is INF and the landmark -1 if no
+	 *         landmark reaches both, and lower is INF if they are known not to be connected
+	 */
+	public int[] bounds(int s, int t) {
+		return super.bounds(s, t);
+	}
+
+	/**
+	 * A chain from s to t through the landmark giving the smallest upper bound, found by
+	 * walking down the landmark distances without searching. It is a shortest chain whenever
+	 * the bounds meet.
+	 *
+	 * @param s Index of the source person
+	 * @param t Index of the target person
+	 * @return Indexes of the people on the chain, from s to t; null if no landmark reaches both
+	 */
+	public int[] approximatePath(int s, int t) {
+		if (s == t) {
+			return new int[] {s};
+		}
+		int via = bounds(s, t)[2];
+		return via == -1 ? null : throughLandmark(s, t, via);
+	}
+
+	int closer(int v, int k) {
+		int dv = d(v, k);
+		for (int e=g.offsets[v]; e < g.offsets[v+1]; e++) {
+			if (d(g.neighbors[e], k) == dv - 1) {
+				return g.neighbors[e];
+			}
+		}
+		throw new IllegalStateException("landmark distances do not match the graph at " + g.name(v));
+	}
+
+	/**
+	 * Finds a shortest chain from s to t. When the bounds meet the chain is read off the
+	 * landmark distances. Otherwise a bidirectional breadth-first search runs that skips every
+	 * person whose distance so far plus lower bound (from the landmark giving the upper bound)
+	 * to the other end exceeds the upper bound, as no shortest chain can pass through such a
+	 * person, and that stops early with the chain through that landmark once the next level
+	 * could not find a shorter one.
+	 *
+	 * @param s Index of the source person
+	 * @param t Index of the target person
+	 * @return Indexes of the people on the chain, from s to t; null if t cannot be reached
+	 */
+	public int[] path(int s, int t) {
+		if (s == t) {
+			scratch.get().touched = 1;
+			return new int[] {s};
+		}
+		int[] b = bounds(s, t);
+		if (b[0] == INF) {
+			scratch.get().touched = 0;
+			return null;
+		}
+		if (b[0] == b[1]) {
+			scratch.get().touched = 0;
+			return approximatePath(s, t);
+		}
+		return scratch.get().search(s, t, b[1], b[2]);
+	}
+
+	/**
+	 * @return Number of people reached by the calling thread's last call to path
+	 */
+	public int lastTouched() {
+		return scratch.get().touched;
+	}
+
+	/**
+	 * Per-thread state of the guided search, valid where stamp == gen.
+	 */
+	private class Search {
+		final int[] stampF, stampB, predF, predB, distF, distB, queueF, queueB;
+		int gen, touched;
+
+		Search(int n) {
+			stampF = new int[n];
+			stampB = new int[n];
+			predF = new int[n];
+			predB = new int[n];
+			distF = new int[n];
+			distB = new int[n];
+			queueF = new int[n];
+			queueB = new int[n];
+		}
+
+		int[] search(int s, int t, int upper, int via) {
+			if (gen == Integer.MAX_VALUE) {
+				Arrays.fill(stampF, 0);
+				Arrays.fill(stampB, 0);
+				gen = 0;
+			}
+			gen++;
+			// pruning reads the distances to the landmark giving the upper bound only, as
+			// reading all K per person costs more than it saves on small-world graphs; with
+			// no landmark reaching s and t (via -1) nothing is pruned
+			int viaS = via == -1 ? 0 : d(s, via), viaT = via == -1 ? 0 : d(t, via);
+			stampF[s] = gen;
+			predF[s] = -1;
+			distF[s] = 0;
+			queueF[0] = s;
+			stampB[t] = gen;
+			predB[t] = -1;
+			distB[t] = 0;
+			queueB[0] = t;
+			int headF = 0, tailF = 1, headB = 0, tailB = 1;
+			int meet = -1, best = Integer.MAX_VALUE;
+			// sum of the radii of the two searches; with no meeting yet, the chain is longer
+			int levels = 0;
+			touched = 2;
+			while (headF < tailF && headB < tailB && meet == -1) {
+				// the next level can do no better than the chain through the best landmark
+				if (levels + 1 >= upper) {
+					return throughLandmark(s, t, via);
+				}
+				levels++;
+				boolean forward = tailF - headF <= tailB - headB;
+				int[] stamp = forward ? stampF : stampB, other = forward ? stampB : stampF;
+				int[] pred = forward ? predF : predB, dist = forward ? distF : distB;
+				int[] otherDist = forward ? distB : distF;
+				int[] queue = forward ? queueF : queueB;
+				int goal = forward ? viaT : viaS;
+				int head = forward ? headF : headB, tail = forward ? tailF : tailB;
+				int end = tail;
+				for (; head < end; head++) {
+					int v = queue[head];
+					for (int e=g.offsets[v]; e < g.offsets[v+1]; e++) {
+						int w = g.neighbors[e];
+						if (stamp[w] == gen) {
+							continue;
+						}
+						stamp[w] = gen;
+						touched++;
+						// later discoveries of w are no closer, so it stays pruned (dist -1)
+						if (via != -1 && dist[v] + 1 + Math.abs(d(w, via) - goal) > upper) {
+							dist[w] = -1;
+							continue;
+						}
+						pred[w] = v;
+						dist[w] = dist[v] + 1;
+						queue[tail++] = w;
+						if (other[w] == gen && otherDist[w] >= 0 && dist[w] + otherDist[w] < best) {
+							best = dist[w] + otherDist[w];
+							meet = w;
+						}
+					}
+				}
+				if (forward) {
+					headF = head;
+					tailF = tail;
+				} else {
+					headB = head;
+					tailB = tail;
+				}
+			}
+			if (meet == -1) {
+				return null;
+			}
+			int[] path = new int[distF[meet] + distB[meet] + 1];
+			int i = distF[meet];
+			for (int v=meet; v != -1; v=predF[v]) {
+				path[i--] = v;
+			}
+			i = distF[meet];
+			for (int v=meet; v != -1; v=predB[v]) {
+				path[i++] = v;
+			}
+			return path;
+		}
+	}
+}
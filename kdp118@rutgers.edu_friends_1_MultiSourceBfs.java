@@ -0,0 +1,151 @@
+package friends;
+
+import java.util.Arrays;
+
+/**
+ * Breadth-first searches from many sources of a CsrGraph at once. Up to 64 searches share
+ * one pass over the graph: bit i of a person's words stands for source i of the batch, so a
+ * person and its friends are read once per level for the whole batch instead of once per
+ * source, and a level of all 64 searches is a few word operations per friendship.
+ *
+ * Meant for all-pairs style analytics (distances from many people, farness, eccentricity),
+ * where running a separate search from each source would read the graph once per source.
+ * An instance reuses its arrays from batch to batch and is not synchronized.
+ */
+public class MultiSourceBfs {
+
+	static final int BATCH = 64;
+
+	private final CsrGraph g;
+
+	// per person: sources that have reached it, that reached it on the last level, and that
+	// reach it on the next one
+	private final long[] seen, visit, next;
+
+	/**
+	 * @param g Graph to search
+	 */
+	public MultiSourceBfs(CsrGraph g) {
+		this.g = g;
+		int n = g.size();
+		seen = new long[n];
+		visit = new long[n];
+		next = new long[n];
+	}
+
+	/**
+	 * Told of every person a search reaches.
+	 */
+	public interface Visitor {
+		/**
+		 * @param source Position of the source in the sources array
+		 * @param v Person index
+		 * @param dist Number of friendships from the source to v
+		 */
+		void visit(int source, int v, int dist);
+	}
+
+	/**
+	 * Runs a breadth-first search from each source, 64 at a time, and reports every person
+	 * each search reaches, level by level.
+	 *
+	 * @param sources Indexes of the source people
+	 * @param visitor Told of each person reached, including the sources at distance 0
+	 */
+	public void run(int[] sources, Visitor visitor) {
+		for (int from=0; from < sources.length; from += BATCH) {
+			batch(sources, from, Math.min(from + BATCH, sources.length), visitor);
+		}
+	}
+
+	private void batch(int[] sources, int from, int to, Visitor visitor) {
+		int n = g.size();
+		Arrays.fill(seen, 0);
+		Arrays.fill(visit, 0);
+		for (int i=from; i < to; i++) {
+			long bit = 1L << (i - from);
+			seen[sources[i]] |= bit;
+			visit[sources[i]] |= bit;
+			visitor.visit(i, sources[i], 0);
+		}
+		for (int dist=1; ; dist++) {
+			// push the last level of every search to friends not yet seen by that search
+			for (int v=0; v < n; v++) {
+				long bits = visit[v];
+				if (bits == 0) {
+					continue;
+				}
+				for (int e=g.offsets[v]; e < g.offsets[v+1]; e++) {
+					int w = g.neighbors[e];
+					next[w] |= bits & ~seen[w];
+				}
+			}
+			boolean more = false;
+			for (int v=0; v < n; v++) {
+				long bits = next[v];
+				visit[v] = bits;
+				if (bits == 0) {
+					continue;
+				}
+				next[v] = 0;
+				seen[v] |= bits;
+				more = true;
+				for (; bits != 0; bits &= bits - 1) {
+					visitor.visit(from + Long.numberOfTrailingZeros(bits), v, dist);
+				}
+			}
+			if (!more) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @param sources Indexes of the source people
+	 * @return Distance from each source (first index) to each person (second index), -1 where
+	 *         a person cannot be reached
+	 */
+	public int[][] distances(int[] sources) {
+		final int[][] dist = new int[sources.length][g.size()];
+		for (int[] d : dist) {
+			Arrays.fill(d, -1);
+		}
+		run(sources, new Visitor() {
+			public void visit(int source, int v, int d) {
+				dist[source][v] = d;
+			}
+		});
+		return dist;
+	}
+
+	/**
+	 * Farness of each source: the sum of its distances to everyone it can reach. Its inverse
+	 * is the closeness of the source.
+	 *
+	 * @param sources Indexes of the source people
+	 * @return Farness of each source, in the same order
+	 */
+	public long[] farness(int[] sources) {
+		final long[] sum = new long[sources.length];
+		run(sources, new Visitor() {
+			public void visit(int source, int v, int d) {
+				sum[source] += d;
+			}
+		});
+		return sum;
+	}
+
+	/**
+	 * @param sources Indexes of the source people
+	 * @return Eccentricity of each source: the largest distance from it to anyone it can reach
+	 */
+	public int[] eccentricities(int[] sources) {
+		final int[] ecc = new int[sources.length];
+		run(sources, new Visitor() {
+			public void visit(int source, int v, int d) {
+				ecc[source] = d;
+			}
+		});
+		return ecc;
+	}
+}
@@ -0,0 +1,201 @@
+package friends;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Names numbered 0..size()-1, stored as UTF-8 bytes back to back, with an open-addressing
+ * hash index from name to number. Nothing here needs a String per name, so a table can sit
+ * in a memory-mapped graph snapshot and be used without decoding it first.
+ */
+class NameTable {
+
+	// UTF-8 bytes of all names; name i is bytes[starts[i] .. starts[i+1])
+	final ByteBuffer bytes;
+	final int[] starts;
+
+	// name number + 1 at the slot of its hash (linear probing), 0 for empty;
+	// the length is a power of two
+	final int[] slots;
+
+	NameTable(ByteBuffer bytes, int[] starts, int[] slots) {
+		this.bytes = bytes;
+		this.starts = starts;
+		this.slots = slots;
+	}
+
+	/**
+	 * @param names Names; for a name given twice, the last one is found by index
+	 * @return Table of the names
+	 */
+	static NameTable of(String[] names) {
+		Builder builder = new Builder();
+		for (String name : names) {
+			byte[] b = name.getBytes(StandardCharsets.UTF_8);
+			builder.add(ByteBuffer.wrap(b), 0, b.length, false);
+		}
+		return builder.build();
+	}
+
+	int size() {
+		return starts.length - 1;
+	}
+
+	String name(int i) {
+		byte[] b = new byte[starts[i+1] - starts[i]];
+		for (int k=0; k < b.length; k++) {
+			b[k] = bytes.get(starts[i] + k);
+		}
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return Number of the name, -1 if it is not in the table
+	 */
+	int index(String name) {
+		byte[] b = name.getBytes(StandardCharsets.UTF_8);
+		return find(slots, bytes, starts, ByteBuffer.wrap(b), 0, b.length, false);
+	}
+
+	/**
+	 * FNV-1a hash of bytes [from, to) of buf, optionally with ASCII letters lowercased.
+	 */
+	static int hash(ByteBuffer buf, int from, int to, boolean lower) {
+		int h = 0x811c9dc5;
+		for (int i=from; i < to; i++) {
+			h = (h ^ (lower ? toLower(buf.get(i)) : buf.get(i))) * 0x01000193;
+		}
+		return h ^ (h >>> 16);
+	}
+
+	static byte toLower(byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+	}
+
+	static int find(int[] slots, ByteBuffer bytes, int[] starts, ByteBuffer key, int from, int to, boolean lower) {
+		int mask = slots.length - 1;
+		for (int s=hash(key, from, to, lower) & mask; slots[s] != 0; s=(s + 1) & mask) {
+			int i = slots[s] - 1;
+			if (equal(bytes, starts[i], starts[i+1], key, from, to, lower)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean equal(ByteBuffer a, int aFrom, int aTo, ByteBuffer b, int bFrom, int bTo, boolean lower) {
+		if (aTo - aFrom != bTo - bFrom) {
+			return false;
+		}
+		for (int i=0; i < aTo - aFrom; i++) {
+			byte y = b.get(bFrom + i);
+			if (a.get(aFrom + i) != (lower ? toLower(y) : y)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Collects names straight from input bytes.
+	 */
+	static class Builder {
+		private byte[] data = new byte[1024];
+		private int length;
+		private int[] starts = new int[64];
+		private int count;
+		private int[] slots = new int[64];
+
+		int size() {
+			return count;
+		}
+
+		/**
+		 * Adds a name; a name added before is then found at the new number.
+		 *
+		 * @return Number of the new name
+		 */
+		int add(ByteBuffer buf, int from, int to, boolean lower) {
+			int s = slot(buf, from, to, lower);
+			append(buf, from, to, lower);
+			slots[s] = count;
+			grow();
+			return count - 1;
+		}
+
+		/**
+		 * @return Number of the name, added if it is new
+		 */
+		int intern(ByteBuffer buf, int from, int to, boolean lower) {
+			int s = slot(buf, from, to, lower);
+			if (slots[s] != 0) {
+				return slots[s] - 1;
+			}
+			append(buf, from, to, lower);
+			slots[s] = count;
+			grow();
+			return count - 1;
+		}
+
+		/**
+		 * @return Number of the name, -1 if it has not been added
+		 */
+		int find(ByteBuffer buf, int from, int to, boolean lower) {
+			return NameTable.find(slots, ByteBuffer.wrap(data), starts, buf, from, to, lower);
+		}
+
+		// slot holding the name, or the empty slot where it would go
+		private int slot(ByteBuffer buf, int from, int to, boolean lower) {
+			int mask = slots.length - 1;
+			ByteBuffer mine = ByteBuffer.wrap(data);
+			int s = hash(buf, from, to, lower) & mask;
+			for (; slots[s] != 0; s=(s + 1) & mask) {
+				int i = slots[s] - 1;
+				if (equal(mine, starts[i], starts[i+1], buf, from, to, lower)) {
+					break;
+				}
+			}
+			return s;
+		}
+
+		private void append(ByteBuffer buf, int from, int to, boolean lower) {
+			while (length + (to - from) > data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			for (int i=from; i < to; i++) {
+				data[length++] = lower ? toLower(buf.get(i)) : buf.get(i);
+			}
+			if (count + 2 > starts.length) {
+				starts = Arrays.copyOf(starts, starts.length * 2);
+			}
+			count++;
+			starts[count] = length;
+		}
+
+		// keeps the table at most half full
+		private void grow() {
+			if (2 * count <= slots.length) {
+				return;
+			}
+			int[] old = slots;
+			slots = new int[old.length * 2];
+			int mask = slots.length - 1;
+			ByteBuffer mine = ByteBuffer.wrap(data);
+			for (int entry : old) {
+				if (entry != 0) {
+					int i = entry - 1;
+					int s = hash(mine, starts[i], starts[i+1], false) & mask;
+					while (slots[s] != 0) {
+						s = (s + 1) & mask;
+					}
+					slots[s] = entry;
+				}
+			}
+		}
+
+		NameTable build() {
+			return new NameTable(ByteBuffer.wrap(Arrays.copyOf(data, length)), Arrays.copyOf(starts, count + 1), slots);
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package friends;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Level-synchronous breadth-first search of a CsrGraph on a fork-join pool, for traversals
+ * of the whole graph. Each level is expanded either top-down (the frontier's friends are
+ * claimed with a compare-and-set on the visited bitset) or bottom-up (every unvisited person
+ * looks for a friend in the frontier and stops at the first one), whichever touches fewer
+ * edges, in the manner of direction-optimizing BFS.
+ *
+ * A search can be limited to the students of one school. Visited marks are kept between
+ * searches of the same instance, so repeated searches from unvisited people enumerate
+ * connected components. When a level is expanded by several tasks, which of several frontier
+ * people becomes a person's predecessor is not fixed, but distances are.
+ */
+public class ParallelBfs {
+
+	// frontier people per top-down task
+	static final int GRAIN = 1024;
+
+	// people per bottom-up task (a multiple of 64, so tasks own whole bitset words)
+	static final int BOTTOM_UP_GRAIN = 1 << 14;
+
+	// go bottom-up when the frontier has more than 1/ALPHA of the unexplored edges,
+	// and at least 1/BETA of all people
+	static final int ALPHA = 14, BETA = 24;
+
+	private final CsrGraph g;
+	private final int school;
+	private final ForkJoinPool pool;
+	private final AtomicLongArray visited;
+	private final int[] pred, dist;
+
+	// people reached, in order; each search appends its levels, which serve as its frontiers
+	private final int[] order;
+	private int count, searchStart;
+
+	// friend entries of people not yet reached
+	private long unexplored;
+
+	/**
+	 * @param g Graph to search
+	 * @param school Id of the school whose students may be visited, -1 for everyone
+	 * @param pool Pool on which large levels are expanded
+	 */
+	public ParallelBfs(CsrGraph g, int school, ForkJoinPool pool) {
+		this.g = g;
+		this.school = school;
+		this.pool = pool;
+		int n = g.size();
+		visited = new AtomicLongArray((n + 63) >>> 6);
+		pred = new int[n];
+		dist = new int[n];
+		order = new int[n];
+		for (int v=0; v < n; v++) {
+			if (allowed(v)) {
+				unexplored += g.degree(v);
+			}
+		}
+	}
+
+	private boolean allowed(int v) {
+		return school == -1 || g.school[v] == school;
+	}
+
+	/**
+	 * Searches from a person not yet visited, until everyone reachable is visited or, if a
+	 * target is given, until the level on which the target is reached.
+	 *
+	 * @param source Index of the starting person
+	 * @param target Index of the person to stop at, -1 to search everything
+	 * @return Number of people reached by this search (0 if source was already visited)
+	 */
+	public int search(int source, int target) {
+		searchStart = count;
+		if (!claim(source)) {
+			return 0;
+		}
+		pred[source] = -1;
+		dist[source] = 0;
+		order[count++] = source;
+		unexplored -= g.degree(source);
+		long frontierEdges = g.degree(source);
+		int levelStart = searchStart;
+		boolean bottomUp = false;
+		while (levelStart < count && (target == -1 || !visited(target))) {
+			int levelEnd = count;
+			int frontier = levelEnd - levelStart;
+			bottomUp = frontierEdges > unexplored / ALPHA && frontier >= g.size() / BETA;
+			frontierEdges = expand(levelStart, levelEnd, bottomUp);
+			unexplored -= frontierEdges;
+			levelStart = levelEnd;
+		}
+		return count - searchStart;
+	}
+
+	/**
+	 * @param v Person index
+	 * @return Whether v has been reached by a search of this instance
+	 */
+	public boolean visited(int v) {
+		return (visited.get(v >>> 6) & (1L << v)) != 0;
+	}
+
+	/**
+	 * @param v Person index, visited
+	 * @return Number of friendships between v and the source of the search that reached it
+	 */
+	public int dist(int v) {
+		return dist[v];
+	}
+
+	/**
+	 * @param v Person index, visited
+	 * @return People on a shortest chain from the source of the search that reached v, to v
+	 */
+	public int[] path(int v) {
+		int[] path = new int[dist[v] + 1];
+		for (int i=dist[v]; i >= 0; i--) {
+			path[i] = v;
+			v = pred[v];
+		}
+		return path;
+	}
+
+	/**
+	 * @return People reached by the last search, level by level
+	 */
+	public int[] reached() {
+		return Arrays.copyOfRange(order, searchStart, count);
+	}
+
+	private boolean claim(int v) {
+		int i = v >>> 6;
+		long bit = 1L << v;
+		while (true) {
+			long old = visited.get(i);
+			if ((old & bit) != 0) {
+				return false;
+			}
+			if (visited.compareAndSet(i, old, old | bit)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Expands the level order[levelStart..levelEnd), appending the next level to order.
+	 *
+	 * @return Friend entries of the people in the next level
+	 */
+	private long expand(int levelStart, int levelEnd, boolean bottomUp) {
+		Step[] steps;
+		long[] frontierBits = null;
+		if (bottomUp) {
+			frontierBits = new long[(g.size() + 63) >>> 6];
+			for (int i=levelStart; i < levelEnd; i++) {
+				frontierBits[order[i] >>> 6] |= 1L << order[i];
+			}
+			steps = new Step[(g.size() + BOTTOM_UP_GRAIN - 1) / BOTTOM_UP_GRAIN];
+			for (int k=0; k < steps.length; k++) {
+				steps[k] = new Step(k * BOTTOM_UP_GRAIN, Math.min(g.size(), (k + 1) * BOTTOM_UP_GRAIN), frontierBits);
+			}
+		} else {
+			steps = new Step[(levelEnd - levelStart + GRAIN - 1) / GRAIN];
+			for (int k=0; k < steps.length; k++) {
+				steps[k] = new Step(levelStart + k * GRAIN, Math.min(levelEnd, levelStart + (k + 1) * GRAIN), null);
+			}
+		}
+		if (steps.length == 1) {
+			steps[0].compute();
+		} else {
+			final Step[] all = steps;
+			pool.invoke(ForkJoinTask.adapt(new Runnable() {
+				public void run() {
+					ForkJoinTask.invokeAll(all);
+				}
+			}));
+		}
+		long edges = 0;
+		for (Step step : steps) {
+			System.arraycopy(step.found, 0, order, count, step.size);
+			count += step.size;
+			edges += step.edges;
+		}
+		return edges;
+	}
+
+	/**
+	 * Expands part of a level: a slice of the frontier (top-down) or a range of people
+	 * (bottom-up, when frontierBits is given). People reached are collected in found.
+	 */
+	private class Step extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		private final long[] frontierBits;
+		int[] found = new int[16];
+		int size;
+		long edges;
+
+		Step(int from, int to, long[] frontierBits) {
+			this.from = from;
+			this.to = to;
+			this.frontierBits = frontierBits;
+		}
+
+		private void add(int v, int p) {
+			pred[v] = p;
+			dist[v] = dist[p] + 1;
+			edges += g.degree(v);
+			if (size == found.length) {
+				found = Arrays.copyOf(found, size * 2);
+			}
+			found[size++] = v;
+		}
+
+		protected void compute() {
+			if (frontierBits == null) {
+				for (int i=from; i < to; i++) {
+					int v = order[i];
+					for (int e=g.offsets[v]; e < g.offsets[v+1]; e++) {
+						int w = g.neighbors[e];
+						if (allowed(w) && claim(w)) {
+							add(w, v);
+						}
+					}
+				}
+				return;
+			}
+			for (int v=from; v < to; v++) {
+				if (!allowed(v) || visited(v)) {
+					continue;
+				}
+				for (int e=g.offsets[v]; e < g.offsets[v+1]; e++) {
+					int u = g.neighbors[e];
+					if ((frontierBits[u >>> 6] & (1L << u)) != 0) {
+						claim(v);
+						add(v, u);
+						break;
+					}
+				}
+			}
+		}
+	}
+}
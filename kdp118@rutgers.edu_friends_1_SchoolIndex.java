@@ -0,0 +1,152 @@
+package friends;
+
+import java.util.ArrayList;
+
+/**
+ * The cliques of every school of a CsrGraph, computed once. Students are joined in a
+ * UnionFind over the friendships between students of the same school, in a single pass over
+ * all edges; the resulting components are then laid out school by school in one flat array,
+ * so a query copies out its answer and does nothing else.
+ *
+ * Cliques of a school are ordered by their first member, and members by index.
+ */
+public class SchoolIndex {
+
+	private final CsrGraph g;
+
+	// students, grouped by school, then clique, then index
+	private final int[] members;
+
+	// clique k is members[cliqueStart[k] .. cliqueStart[k+1])
+	private final int[] cliqueStart;
+
+	// cliques of school s are schoolStart[s] .. schoolStart[s+1]-1
+	private final int[] schoolStart;
+
+	private SchoolIndex(CsrGraph g, int[] members, int[] cliqueStart, int[] schoolStart) {
+		this.g = g;
+		this.members = members;
+		this.cliqueStart = cliqueStart;
+		this.schoolStart = schoolStart;
+	}
+
+	/**
+	 * Builds the index of a graph in O(V+E) time.
+	 *
+	 * @param g Graph to index
+	 * @return The index
+	 */
+	public static SchoolIndex of(CsrGraph g) {
+		int n = g.size();
+		UnionFind uf = new UnionFind(n);
+		for (int v=0; v < n; v++) {
+			int s = g.school[v];
+			if (s == -1) {
+				continue;
+			}
+			for (int e=g.offsets[v]; e < g.offsets[v+1]; e++) {
+				int w = g.neighbors[e];
+				if (w > v && g.school[w] == s) {
+					uf.union(v, w);
+				}
+			}
+		}
+
+		// number the cliques in order of their first member
+		int[] cliqueOfRoot = new int[n];
+		int[] cliqueOf = new int[n];
+		int cliques = 0;
+		for (int v=0; v < n; v++) {
+			cliqueOfRoot[v] = -1;
+		}
+		int[] size = new int[n];
+		int[] schoolOf = new int[n];
+		int students = 0;
+		for (int v=0; v < n; v++) {
+			if (g.school[v] == -1) {
+				continue;
+			}
+			int root = uf.find(v);
+			if (cliqueOfRoot[root] == -1) {
+				schoolOf[cliques] = g.school[v];
+				cliqueOfRoot[root] = cliques++;
+			}
+			cliqueOf[v] = cliqueOfRoot[root];
+			size[cliqueOf[v]]++;
+			students++;
+		}
+
+		// place the cliques school by school, keeping their order within a school
+		int[] schoolStart = new int[g.schoolCount()+1];
+		for (int k=0; k < cliques; k++) {
+			schoolStart[schoolOf[k]+1]++;
+		}
+		for (int s=0; s < g.schoolCount(); s++) {
+			schoolStart[s+1] += schoolStart[s];
+		}
+		int[] cursor = new int[g.schoolCount()];
+		System.arraycopy(schoolStart, 0, cursor, 0, cursor.length);
+		int[] position = new int[cliques];
+		for (int k=0; k < cliques; k++) {
+			position[k] = cursor[schoolOf[k]]++;
+		}
+		int[] cliqueStart = new int[cliques+1];
+		for (int k=0; k < cliques; k++) {
+			cliqueStart[position[k]+1] = size[k];
+		}
+		for (int k=0; k < cliques; k++) {
+			cliqueStart[k+1] += cliqueStart[k];
+		}
+		int[] fill = new int[cliques];
+		System.arraycopy(cliqueStart, 0, fill, 0, cliques);
+		int[] members = new int[students];
+		for (int v=0; v < n; v++) {
+			if (g.school[v] != -1) {
+				members[fill[position[cliqueOf[v]]]++] = v;
+			}
+		}
+		return new SchoolIndex(g, members, cliqueStart, schoolStart);
+	}
+
+	/**
+	 * @param school School id
+	 * @return Number of cliques in the school
+	 */
+	public int cliqueCount(int school) {
+		return schoolStart[school+1] - schoolStart[school];
+	}
+
+	/**
+	 * @param school School id
+	 * @param k Clique number, 0 .. cliqueCount(school)-1
+	 * @return Indexes of the students in the clique
+	 */
+	public int[] clique(int school, int k) {
+		int c = schoolStart[school] + k;
+		int[] clique = new int[cliqueStart[c+1] - cliqueStart[c]];
+		System.arraycopy(members, cliqueStart[c], clique, 0, clique.length);
+		return clique;
+	}
+
+	/**
+	 * Looks up the cliques of a school, in time proportional to the size of the answer.
+	 *
+	 * @param school Name of school, as stored in the graph (lower case)
+	 * @return Array list of clique array lists, empty if there is no student in the school
+	 */
+	public ArrayList<ArrayList<String>> cliques(String school) {
+		ArrayList<ArrayList<String>> answer = new ArrayList<ArrayList<String>>();
+		int s = g.schoolId(school);
+		if (s == -1) {
+			return answer;
+		}
+		for (int c=schoolStart[s]; c < schoolStart[s+1]; c++) {
+			ArrayList<String> clique = new ArrayList<String>(cliqueStart[c+1] - cliqueStart[c]);
+			for (int i=cliqueStart[c]; i < cliqueStart[c+1]; i++) {
+				clique.add(g.name(members[i]));
+			}
+			answer.add(clique);
+		}
+		return answer;
+	}
+}
@@ -0,0 +1,91 @@
+package friends;
+
+/**
+ * Disjoint sets of person indexes 0..n-1, with path compression and union by rank, so a
+ * sequence of m operations takes nearly O(m) time.
+ */
+public class UnionFind {
+
+	private final int[] parent;
+	private final byte[] rank;
+	private int sets;
+
+	/**
+	 * Creates n singleton sets.
+	 *
+	 * @param n Number of elements
+	 */
+	public UnionFind(int n) {
+		parent = new int[n];
+		rank = new byte[n];
+		for (int i=0; i < n; i++) {
+			parent[i] = i;
+		}
+		sets = n;
+	}
+
+	/**
+	 * @param x Element
+	 * @return Representative of the set containing x
+	 */
+	public int find(int x) {
+		int root = x;
+		while (parent[root] != root) {
+			root = parent[root];
+		}
+		// point everything on the way straight at the root
+		while (parent[x] != root) {
+			int next = parent[x];
+			parent[x] = root;
+			x = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Merges the sets containing x and y.
+	 *
+	 * @param x Element
+	 * @param y Element
+	 * @return True if they were in different sets
+	 */
+	public boolean union(int x, int y) {
+		int rx = find(x), ry = find(y);
+		if (rx == ry) {
+			return false;
+		}
+		if (rank[rx] < rank[ry]) {
+			parent[rx] = ry;
+		} else if (rank[rx] > rank[ry]) {
+			parent[ry] = rx;
+		} else {
+			parent[ry] = rx;
+			rank[rx]++;
+		}
+		sets--;
+		return true;
+	}
+
+	/**
+	 * @param x Element
+	 * @param y Element
+	 * @return True if x and y are in the same set
+	 */
+	public boolean connected(int x, int y) {
+		return find(x) == find(y);
+	}
+
+	/**
+	 * @return Number of elements
+	 */
+	public int size() {
+		return parent.length;
+	}
+
+	/**
+	 * @return Number of disjoint sets
+	 */
+	public int sets() {
+		return sets;
+	}
+}
@@ -0,0 +1,210 @@
+package poly;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A polynomial converted once from its linked list into Horner form, for evaluating the
+ * same polynomial at many points. Dense polynomials keep every coefficient from the highest
+ * degree down; sparse ones keep only the non-zero terms and step over the degree gaps.
+ * All arithmetic is done in double precision and rounded to float at the end.
+ *
+ * author: Kathan Patel, kdp118
+ */
+public class CompiledPolynomial {
+
+   /**
+   * Fraction of non-zero terms (over degree+1) at or above which the dense form is used
+   */
+   static final double DENSE_CUTOFF = 0.25;
+
+   /**
+   * Number of points evaluated together in the batch loop
+   */
+   static final int BLOCK = 256;
+
+   /**
+   * Batch size above which evaluation is split across the fork-join pool
+   */
+   static final int PARALLEL_CUTOFF = 1 << 16;
+
+   /**
+   * Coefficients from the highest degree down. In the dense form the degree of coeffs[i] is
+   * degrees[0] - i; in the sparse form it is degrees[i].
+   */
+   private final double[] coeffs;
+   private final int[] degrees;
+   private final boolean dense;
+
+   private CompiledPolynomial(double[] coeffs, int[] degrees, boolean dense) {
+      this.coeffs = coeffs;
+      this.degrees = degrees;
+      this.dense = dense;
+   }
+
+   /**
+   * Compiles a polynomial. Terms may be in any order, repeated degrees are added together.
+   *
+   * @param poly Polynomial (front of linked list)
+   * @return Compiled form of the polynomial
+   */
+   public static CompiledPolynomial compile(Node poly) {
+      int terms = 0, maxDegree = 0;
+      for (Node ptr = poly; ptr != null; ptr = ptr.next) {
+         terms++;
+         maxDegree = Math.max(maxDegree, ptr.term.degree);
+      }
+      if (terms == 0) {
+         return new CompiledPolynomial(new double[] {0}, new int[] {0}, true);
+      }
+      if (terms >= DENSE_CUTOFF * (maxDegree + 1)) {
+         double[] c = new double[maxDegree + 1];
+         for (Node ptr = poly; ptr != null; ptr = ptr.next) {
+            c[maxDegree - ptr.term.degree] += ptr.term.coeff;
+         }
+         return new CompiledPolynomial(c, new int[] {maxDegree}, true);
+      }
+      // sort by degree descending, degree in the high word and position in the low word
+      float[] raw = new float[terms];
+      long[] order = new long[terms];
+      int n = 0;
+      for (Node ptr = poly; ptr != null; ptr = ptr.next, n++) {
+         raw[n] = ptr.term.coeff;
+         order[n] = (long) ptr.term.degree << 32 | n;
+      }
+      Arrays.sort(order);
+      double[] c = new double[terms];
+      int[] d = new int[terms];
+      int size = 0;
+      for (int i = terms - 1; i >= 0; i--) {
+         int degree = (int) (order[i] >>> 32);
+         if (size > 0 && d[size - 1] == degree) {
+            c[size - 1] += raw[(int) order[i]];
+         } else {
+            d[size] = degree;
+            c[size++] = raw[(int) order[i]];
+         }
+      }
+      return new CompiledPolynomial(Arrays.copyOf(c, size), Arrays.copyOf(d, size), false);
+   }
+
+   /**
+   * Evaluates the polynomial at a given value.
+   *
+   * @param x Value at which evaluation is to be done
+   * @return Value of the polynomial at x
+   */
+   public float evaluate(float x) {
+      return (float) evaluate((double) x);
+   }
+
+   private double evaluate(double x) {
+      double value = coeffs[0];
+      if (dense) {
+         for (int i = 1; i < coeffs.length; i++) {
+            value = value * x + coeffs[i];
+         }
+         return value;
+      }
+      for (int i = 1; i < coeffs.length; i++) {
+         value = value * power(x, degrees[i - 1] - degrees[i]) + coeffs[i];
+      }
+      return value * power(x, degrees[degrees.length - 1]);
+   }
+
+   /**
+   * Evaluates the polynomial at every point of xs, writing the results into out. Large
+   * batches are split across the common fork-join pool.
+   *
+   * @param xs Values at which evaluation is to be done
+   * @param out Results, out[i] is the value at xs[i]; must be at least as long as xs
+   */
+   public void evaluate(float[] xs, float[] out) {
+      if (out.length < xs.length) {
+         throw new IllegalArgumentException("out is shorter than xs");
+      }
+      if (xs.length <= PARALLEL_CUTOFF) {
+         evaluateRange(xs, out, 0, xs.length);
+      } else {
+         ForkJoinPool.commonPool().invoke(new BatchTask(xs, out, 0, xs.length));
+      }
+   }
+
+   /**
+   * Evaluates points [from, to) block by block. Each coefficient is applied to a whole block
+   * of points at once so the inner loop is a straight multiply-add over an array.
+   */
+   private void evaluateRange(float[] xs, float[] out, int from, int to) {
+      double[] acc = new double[BLOCK];
+      double[] px = new double[BLOCK];
+      for (int start = from; start < to; start += BLOCK) {
+         int len = Math.min(BLOCK, to - start);
+         for (int j = 0; j < len; j++) {
+            px[j] = xs[start + j];
+            acc[j] = coeffs[0];
+         }
+         if (dense) {
+            for (int i = 1; i < coeffs.length; i++) {
+               double c = coeffs[i];
+               for (int j = 0; j < len; j++) {
+                  acc[j] = acc[j] * px[j] + c;
+               }
+            }
+         } else {
+            for (int i = 1; i < coeffs.length; i++) {
+               int gap = degrees[i - 1] - degrees[i];
+               double c = coeffs[i];
+               for (int j = 0; j < len; j++) {
+                  acc[j] = acc[j] * power(px[j], gap) + c;
+               }
+            }
+            int last = degrees[degrees.length - 1];
+            for (int j = 0; j < len; j++) {
+               acc[j] *= power(px[j], last);
+            }
+         }
+         for (int j = 0; j < len; j++) {
+            out[start + j] = (float) acc[j];
+         }
+      }
+   }
+
+   /**
+   * x^e by repeated squaring, e >= 0
+   */
+   private static double power(double x, int e) {
+      double result = 1;
+      while (e > 0) {
+         if ((e & 1) != 0) {
+            result *= x;
+         }
+         x *= x;
+         e >>= 1;
+      }
+      return result;
+   }
+
+   private class BatchTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+      private final float[] xs, out;
+      private final int from, to;
+
+      BatchTask(float[] xs, float[] out, int from, int to) {
+         this.xs = xs;
+         this.out = out;
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      protected void compute() {
+         if (to - from <= PARALLEL_CUTOFF) {
+            evaluateRange(xs, out, from, to);
+            return;
+         }
+         int mid = (from + to) >>> 1;
+         invokeAll(new BatchTask(xs, out, from, mid), new BatchTask(xs, out, mid, to));
+      }
+   }
+}
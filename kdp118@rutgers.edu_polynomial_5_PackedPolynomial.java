@@ -0,0 +1,104 @@
+package poly;
+
+import java.util.Arrays;
+
+/**
+ * Polynomial stored in two parallel primitive arrays instead of a linked list. Terms are
+ * kept in the order they were appended, which for PolynomialReader is the file order
+ * (descending degrees).
+ *
+ * author: Kathan Patel, kdp118
+ */
+public class PackedPolynomial {
+
+   private float[] coeffs;
+   private int[] degrees;
+   private int size;
+
+   /**
+   * Creates an empty polynomial with room for the given number of terms.
+   *
+   * @param capacity Initial number of terms that can be held without growing
+   */
+   public PackedPolynomial(int capacity) {
+      coeffs = new float[Math.max(capacity, 4)];
+      degrees = new int[coeffs.length];
+   }
+
+   /**
+   * Appends a term at the end.
+   *
+   * @param coeff Coefficient of the term
+   * @param degree Degree of the term
+   */
+   public void append(float coeff, int degree) {
+      if (size == coeffs.length) {
+         int newCapacity = coeffs.length + (coeffs.length >> 1);
+         coeffs = Arrays.copyOf(coeffs, newCapacity);
+         degrees = Arrays.copyOf(degrees, newCapacity);
+      }
+      coeffs[size] = coeff;
+      degrees[size++] = degree;
+   }
+
+   /**
+   * @return Number of terms
+   */
+   public int size() {
+      return size;
+   }
+
+   /**
+   * @param i Position of the term
+   * @return Coefficient of the i-th term
+   */
+   public float coeff(int i) {
+      if (i >= size) {
+         throw new IndexOutOfBoundsException("term " + i + " of " + size);
+      }
+      return coeffs[i];
+   }
+
+   /**
+   * @param i Position of the term
+   * @return Degree of the i-th term
+   */
+   public int degree(int i) {
+      if (i >= size) {
+         throw new IndexOutOfBoundsException("term " + i + " of " + size);
+      }
+      return degrees[i];
+   }
+
+   /**
+   * Builds the linked list form, the same list Polynomial.read builds for the same input:
+   * the last appended term is at the front.
+   *
+   * @return Front of the polynomial linked list, null if there are no terms
+   */
+   public Node toNode() {
+      Node poly = null;
+      for (int i = 0; i < size; i++) {
+         poly = new Node(coeffs[i], degrees[i], poly);
+      }
+      return poly;
+   }
+
+   /**
+   * Packs a polynomial linked list, keeping the list order.
+   *
+   * @param poly Polynomial (front of linked list)
+   * @return Packed copy of the polynomial
+   */
+   public static PackedPolynomial of(Node poly) {
+      int n = 0;
+      for (Node ptr = poly; ptr != null; ptr = ptr.next) {
+         n++;
+      }
+      PackedPolynomial packed = new PackedPolynomial(n);
+      for (Node ptr = poly; ptr != null; ptr = ptr.next) {
+         packed.append(ptr.term.coeff, ptr.term.degree);
+      }
+      return packed;
+   }
+}
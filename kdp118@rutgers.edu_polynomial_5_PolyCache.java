@@ -0,0 +1,92 @@
+package poly;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of evaluated PolyExpr results, keyed by expression content. The bound is the
+ * total number of terms held; when it is exceeded the least recently used results are
+ * evicted. Safe to share between threads.
+ *
+ * author: Kathan Patel, kdp118
+ */
+public class PolyCache {
+
+   /**
+   * Stored in place of a zero (null) result, so that zero results are cached too
+   */
+   static final Node ZERO = new Node(0, 0, null);
+
+   private final LinkedHashMap<PolyExpr, Node> results = new LinkedHashMap<PolyExpr, Node>(64, 0.75f, true);
+   private final LinkedHashMap<PolyExpr, Integer> sizes = new LinkedHashMap<PolyExpr, Integer>();
+   private final long maxTerms;
+   private long terms;
+   private long hits, misses;
+
+   /**
+   * @param maxTerms Total number of terms the cache may hold
+   */
+   public PolyCache(long maxTerms) {
+      this.maxTerms = maxTerms;
+   }
+
+   /**
+   * @param expr Expression to look up
+   * @return Cached result, ZERO for a cached zero polynomial, null if not cached
+   */
+   synchronized Node get(PolyExpr expr) {
+      Node result = results.get(expr);
+      if (result != null) {
+         hits++;
+      } else {
+         misses++;
+      }
+      return result;
+   }
+
+   /**
+   * Stores a result, evicting least recently used ones to stay under the term bound.
+   * Results bigger than the whole bound are not stored.
+   */
+   synchronized void put(PolyExpr expr, Node result) {
+      int n = 0;
+      for (Node ptr = result; ptr != null; ptr = ptr.next) {
+         n++;
+      }
+      if (n > maxTerms || results.containsKey(expr)) {
+         return;
+      }
+      results.put(expr, result == null ? ZERO : result);
+      sizes.put(expr, n);
+      terms += n;
+      Iterator<Map.Entry<PolyExpr, Node>> eldest = results.entrySet().iterator();
+      while (terms > maxTerms && eldest.hasNext()) {
+         PolyExpr victim = eldest.next().getKey();
+         eldest.remove();
+         terms -= sizes.remove(victim);
+      }
+   }
+
+   /**
+   * Drops every cached result.
+   */
+   public synchronized void clear() {
+      results.clear();
+      sizes.clear();
+      terms = 0;
+   }
+
+   /**
+   * @return Number of cached results
+   */
+   public synchronized int size() {
+      return results.size();
+   }
+
+   @Override
+   public synchronized String toString() {
+      return "PolyCache[" + results.size() + " results, " + terms + "/" + maxTerms + " terms, "
+            + hits + " hits, " + misses + " misses]";
+   }
+}
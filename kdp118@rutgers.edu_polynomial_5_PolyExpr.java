@@ -0,0 +1,266 @@
+package poly;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Lazy expression over polynomials, for example add(multiply(p, q), r). Nothing is computed
+ * until evaluate is called. Expressions are compared by content: two leaves are equal when
+ * their terms are equal, and add/multiply are treated as commutative, so equal subexpressions
+ * are computed once per evaluation and their results can be shared through a PolyCache
+ * across evaluations. Independent branches are evaluated in parallel on a fork-join pool.
+ * <p>
+ * Leaf polynomials must not be changed after they are wrapped.
+ *
+ * author: Kathan Patel, kdp118
+ */
+public class PolyExpr {
+
+   private static final int LEAF = 0, ADD = 1, MULTIPLY = 2;
+
+   private final int op;
+   private final Node poly;
+   private final PolyExpr left, right;
+   private final long hash;
+   private final int termCount;
+
+   private PolyExpr(int op, Node poly, PolyExpr left, PolyExpr right, long hash, int termCount) {
+      this.op = op;
+      this.poly = poly;
+      this.left = left;
+      this.right = right;
+      this.hash = hash;
+      this.termCount = termCount;
+   }
+
+   /**
+   * Wraps a polynomial as a leaf of an expression.
+   *
+   * @param poly Polynomial (front of linked list)
+   * @return Leaf expression
+   */
+   public static PolyExpr of(Node poly) {
+      long h = 0x2545F4914F6CDD1DL;
+      int n = 0;
+      for (Node ptr = poly; ptr != null; ptr = ptr.next, n++) {
+         h = mix(h ^ Float.floatToIntBits(ptr.term.coeff));
+         h = mix(h ^ ptr.term.degree);
+      }
+      return new PolyExpr(LEAF, poly, null, null, mix(h ^ n), n);
+   }
+
+   /**
+   * @param other Expression to add
+   * @return Expression for this + other
+   */
+   public PolyExpr add(PolyExpr other) {
+      return combine(ADD, this, other);
+   }
+
+   /**
+   * @param other Expression to multiply by
+   * @return Expression for this * other
+   */
+   public PolyExpr multiply(PolyExpr other) {
+      return combine(MULTIPLY, this, other);
+   }
+
+   private static PolyExpr combine(int op, PolyExpr a, PolyExpr b) {
+      // order operands by hash so that p+q and q+p are the same expression
+      if (a.hash > b.hash) {
+         PolyExpr t = a;
+         a = b;
+         b = t;
+      }
+      long h = mix(mix(op * 0x9E3779B97F4A7C15L ^ a.hash) ^ b.hash * 31);
+      return new PolyExpr(op, null, a, b, h, a.termCount + b.termCount);
+   }
+
+   private static long mix(long z) {
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+   }
+
+   /**
+   * Evaluates the expression on the common fork-join pool without a cache.
+   *
+   * @return A new polynomial holding the value of the expression
+   */
+   public Node evaluate() {
+      return evaluate(null, ForkJoinPool.commonPool());
+   }
+
+   /**
+   * Evaluates the expression, reusing and filling the cache for every add/multiply node.
+   *
+   * @param cache Results of earlier evaluations, may be null
+   * @param pool Pool on which independent branches run
+   * @return A new polynomial holding the value of the expression; none of its nodes are
+   * shared with the inputs or the cache
+   */
+   public Node evaluate(PolyCache cache, ForkJoinPool pool) {
+      ConcurrentHashMap<PolyExpr, EvalTask> seen = new ConcurrentHashMap<PolyExpr, EvalTask>();
+      Node result = pool.invoke(new EvalTask(this, cache, seen));
+      // copy so the caller can't alter a cached or leaf list
+      return Polynomial.add(result, null);
+   }
+
+   /**
+   * Shape of the expression, leaves shown by their term count and content hash, for example
+   * ((p3#1a2b * p5#3c4d) + p2#5e6f).
+   */
+   @Override
+   public String toString() {
+      if (op == LEAF) {
+         return "p" + termCount + "#" + Long.toHexString(hash & 0xffff);
+      }
+      return "(" + left + (op == ADD ? " + " : " * ") + right + ")";
+   }
+
+   @Override
+   public int hashCode() {
+      return (int) (hash ^ (hash >>> 32));
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      }
+      if (!(o instanceof PolyExpr)) {
+         return false;
+      }
+      PolyExpr other = (PolyExpr) o;
+      if (!sameNode(this, other)) {
+         return false;
+      }
+      if (op == LEAF) {
+         return true;
+      }
+      // walk both trees side by side, each pair of nodes once, so shared subexpressions
+      // (p*p, repeated squaring) are not compared again for every path that reaches them
+      HashSet<Pair> compared = new HashSet<Pair>();
+      ArrayDeque<PolyExpr> pending = new ArrayDeque<PolyExpr>();
+      pending.push(left);
+      pending.push(other.left);
+      pending.push(right);
+      pending.push(other.right);
+      while (!pending.isEmpty()) {
+         PolyExpr y = pending.pop(), x = pending.pop();
+         if (x == y || !compared.add(new Pair(x, y))) {
+            continue;
+         }
+         if (!sameNode(x, y)) {
+            return false;
+         }
+         if (x.op != LEAF) {
+            pending.push(x.left);
+            pending.push(y.left);
+            pending.push(x.right);
+            pending.push(y.right);
+         }
+      }
+      return true;
+   }
+
+   /**
+   * Compares the node itself: hash, operator and term count, and for leaves the terms.
+   */
+   private static boolean sameNode(PolyExpr x, PolyExpr y) {
+      if (x.hash != y.hash || x.op != y.op || x.termCount != y.termCount) {
+         return false;
+      }
+      if (x.op != LEAF || x.poly == y.poly) {
+         return true;
+      }
+      Node a = x.poly, b = y.poly;
+      for (; a != null && b != null; a = a.next, b = b.next) {
+         if (a.term.degree != b.term.degree
+               || Float.floatToIntBits(a.term.coeff) != Float.floatToIntBits(b.term.coeff)) {
+            return false;
+         }
+      }
+      return a == b;
+   }
+
+   /**
+   * Two nodes compared by identity, for remembering which pairs equals has already seen.
+   */
+   private static final class Pair {
+      private final PolyExpr x, y;
+
+      Pair(PolyExpr x, PolyExpr y) {
+         this.x = x;
+         this.y = y;
+      }
+
+      @Override
+      public int hashCode() {
+         return System.identityHashCode(x) * 31 + System.identityHashCode(y);
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return o instanceof Pair && ((Pair) o).x == x && ((Pair) o).y == y;
+      }
+   }
+
+   private static class EvalTask extends RecursiveTask<Node> {
+      private static final long serialVersionUID = 1L;
+      private final PolyExpr expr;
+      private final PolyCache cache;
+      private final ConcurrentHashMap<PolyExpr, EvalTask> seen;
+
+      EvalTask(PolyExpr expr, PolyCache cache, ConcurrentHashMap<PolyExpr, EvalTask> seen) {
+         this.expr = expr;
+         this.cache = cache;
+         this.seen = seen;
+      }
+
+      /**
+      * Task for a subexpression, shared by every occurrence within this evaluation;
+      * null for leaves, which need no work
+      */
+      private EvalTask taskFor(PolyExpr sub) {
+         if (sub.op == LEAF) {
+            return null;
+         }
+         EvalTask task = seen.get(sub);
+         if (task == null) {
+            EvalTask fresh = new EvalTask(sub, cache, seen);
+            task = seen.putIfAbsent(sub, fresh);
+            if (task == null) {
+               task = fresh;
+               task.fork();
+            }
+         }
+         return task;
+      }
+
+      @Override
+      protected Node compute() {
+         if (expr.op == LEAF) {
+            return expr.poly;
+         }
+         if (cache != null) {
+            Node cached = cache.get(expr);
+            if (cached != null) {
+               return cached == PolyCache.ZERO ? null : cached;
+            }
+         }
+         EvalTask leftTask = taskFor(expr.left);
+         EvalTask rightTask = taskFor(expr.right);
+         Node a = leftTask == null ? expr.left.poly : leftTask.join();
+         Node b = rightTask == null ? expr.right.poly : rightTask.join();
+         Node result = expr.op == ADD ? Polynomial.add(a, b) : PolyMultiplier.multiply(a, b);
+         if (cache != null) {
+            cache.put(expr, result);
+         }
+         return result;
+      }
+   }
+}
@@ -0,0 +1,351 @@
+package poly;
+
+/**
+ * Multiplication engine for polynomials. Picks a strategy based on the size and density
+ * of the inputs:
+ * <ul>
+ * <li>sparse inputs multiply term by term into a hashed accumulator,</li>
+ * <li>small dense inputs use the schoolbook method,</li>
+ * <li>medium dense inputs use Karatsuba,</li>
+ * <li>large dense inputs with whole-number coefficients use an FFT convolution.</li>
+ * </ul>
+ * Coefficients are accumulated in double precision and rounded to float once at the end.
+ *
+ * author: Kathan Patel, kdp118
+ */
+public class PolyMultiplier {
+
+   /**
+   * Dense length at or below which the schoolbook method is used
+   */
+   static final int SCHOOLBOOK_CUTOFF = 48;
+
+   /**
+   * Dense length at or below which Karatsuba is used, above it FFT takes over
+   */
+   static final int KARATSUBA_CUTOFF = 4096;
+
+   /**
+   * Fraction of non-zero terms (over degree+1) below which an input is treated as sparse
+   */
+   static final double DENSITY_CUTOFF = 0.2;
+
+   // prevent instantiation
+   private PolyMultiplier() { }
+
+   /**
+   * Returns the product of two polynomials - DOES NOT change either of the input polynomials.
+   * The result is in ascending order of degrees with zero terms removed, the same form
+   * produced by Polynomial.add.
+   *
+   * @param poly1 First input polynomial (front of polynomial linked list)
+   * @param poly2 Second input polynomial (front of polynomial linked list)
+   * @return A new polynomial which is the product of the input polynomials
+   */
+   public static Node multiply(Node poly1, Node poly2) {
+      if (poly1 == null || poly2 == null) {
+         return null;
+      }
+      int terms1 = 0, terms2 = 0, maxDeg1 = 0, maxDeg2 = 0;
+      for (Node ptr = poly1; ptr != null; ptr = ptr.next) {
+         terms1++;
+         maxDeg1 = Math.max(maxDeg1, ptr.term.degree);
+      }
+      for (Node ptr = poly2; ptr != null; ptr = ptr.next) {
+         terms2++;
+         maxDeg2 = Math.max(maxDeg2, ptr.term.degree);
+      }
+      if (terms1 < DENSITY_CUTOFF * (maxDeg1 + 1) || terms2 < DENSITY_CUTOFF * (maxDeg2 + 1)) {
+         return multiplySparse(poly1, poly2, (long) terms1 * terms2);
+      }
+      return fromDense(multiplyDense(toDense(poly1, maxDeg1), toDense(poly2, maxDeg2)));
+   }
+
+   /**
+   * Multiplies two dense coefficient arrays (index = degree), choosing schoolbook,
+   * Karatsuba or FFT by size. FFT is only used when its result can be rounded back
+   * exactly (see fftExact); other large inputs go through Karatsuba.
+   *
+   * @param a Coefficients of first polynomial
+   * @param b Coefficients of second polynomial
+   * @return Coefficients of the product, of length a.length + b.length - 1
+   */
+   public static double[] multiplyDense(double[] a, double[] b) {
+      int shorter = Math.min(a.length, b.length);
+      if (shorter <= SCHOOLBOOK_CUTOFF) {
+         return schoolbook(a, b);
+      }
+      if (Math.max(a.length, b.length) <= KARATSUBA_CUTOFF || !fftExact(a, b)) {
+         return karatsuba(a, b);
+      }
+      return fft(a, b);
+   }
+
+   /**
+   * Tells if an FFT product of a and b rounds back to the exact product: all coefficients
+   * are whole numbers and the round-off bound of the transform stays below 1/4.
+   */
+   static boolean fftExact(double[] a, double[] b) {
+      double maxA = 0, maxB = 0;
+      for (int i = 0; i < a.length; i++) {
+         if (a[i] != Math.rint(a[i])) {
+            return false;
+         }
+         maxA = Math.max(maxA, Math.abs(a[i]));
+      }
+      for (int i = 0; i < b.length; i++) {
+         if (b[i] != Math.rint(b[i])) {
+            return false;
+         }
+         maxB = Math.max(maxB, Math.abs(b[i]));
+      }
+      int logN = 32 - Integer.numberOfLeadingZeros(a.length + b.length - 2);
+      double tolerance = maxA * maxB * Math.min(a.length, b.length) * (logN + 1) * 1e-15;
+      return tolerance < 0.25;
+   }
+
+   /**
+   * Sparse product: every term pair is accumulated into an open addressing table keyed by degree.
+   */
+   static Node multiplySparse(Node poly1, Node poly2, long products) {
+      int cap = 16;
+      while (cap < 1 << 20 && cap < products * 2) {
+         cap <<= 1;
+      }
+      int[] keys = new int[cap];
+      double[] vals = new double[cap];
+      boolean[] used = new boolean[cap];
+      int size = 0;
+      for (Node ptr2 = poly2; ptr2 != null; ptr2 = ptr2.next) {
+         for (Node ptr1 = poly1; ptr1 != null; ptr1 = ptr1.next) {
+            if (size * 2 >= cap) {
+               // grow and rehash
+               int newCap = cap << 1;
+               int[] newKeys = new int[newCap];
+               double[] newVals = new double[newCap];
+               boolean[] newUsed = new boolean[newCap];
+               for (int i = 0; i < cap; i++) {
+                  if (used[i]) {
+                     int s = slot(keys[i], newCap - 1);
+                     while (newUsed[s]) {
+                        s = (s + 1) & (newCap - 1);
+                     }
+                     newUsed[s] = true;
+                     newKeys[s] = keys[i];
+                     newVals[s] = vals[i];
+                  }
+               }
+               cap = newCap;
+               keys = newKeys;
+               vals = newVals;
+               used = newUsed;
+            }
+            int degree = ptr1.term.degree + ptr2.term.degree;
+            int s = slot(degree, cap - 1);
+            while (used[s] && keys[s] != degree) {
+               s = (s + 1) & (cap - 1);
+            }
+            if (!used[s]) {
+               used[s] = true;
+               keys[s] = degree;
+               size++;
+            }
+            vals[s] += (double) ptr1.term.coeff * ptr2.term.coeff;
+         }
+      }
+      // sort occupied slots by degree: degree in the high word, slot in the low word
+      long[] order = new long[size];
+      int n = 0;
+      for (int i = 0; i < cap; i++) {
+         if (used[i]) {
+            order[n++] = (long) keys[i] << 32 | i;
+         }
+      }
+      java.util.Arrays.sort(order);
+      // prepend from the highest degree down so the list ends up ascending
+      Node front = null;
+      for (int i = size - 1; i >= 0; i--) {
+         int s = (int) order[i];
+         float coeff = (float) vals[s];
+         if (coeff != 0) {
+            front = new Node(coeff, keys[s], front);
+         }
+      }
+      return front;
+   }
+
+   private static int slot(int degree, int mask) {
+      int h = degree * 0x9E3779B9;
+      return (h ^ h >>> 16) & mask;
+   }
+
+   /**
+   * Classic O(n*m) product.
+   */
+   static double[] schoolbook(double[] a, double[] b) {
+      double[] c = new double[a.length + b.length - 1];
+      for (int i = 0; i < a.length; i++) {
+         double ai = a[i];
+         if (ai == 0) {
+            continue;
+         }
+         for (int j = 0; j < b.length; j++) {
+            c[i + j] += ai * b[j];
+         }
+      }
+      return c;
+   }
+
+   /**
+   * Karatsuba product, pads the shorter input to the longer length.
+   */
+   static double[] karatsuba(double[] a, double[] b) {
+      int n = Math.max(a.length, b.length);
+      double[] c = karatsubaEqual(java.util.Arrays.copyOf(a, n), java.util.Arrays.copyOf(b, n));
+      return java.util.Arrays.copyOf(c, a.length + b.length - 1);
+   }
+
+   private static double[] karatsubaEqual(double[] a, double[] b) {
+      int n = a.length;
+      if (n <= SCHOOLBOOK_CUTOFF) {
+         return schoolbook(a, b);
+      }
+      int half = n / 2, high = n - half;
+      double[] a0 = java.util.Arrays.copyOfRange(a, 0, half);
+      double[] b0 = java.util.Arrays.copyOfRange(b, 0, half);
+      double[] a1 = java.util.Arrays.copyOfRange(a, half, n);
+      double[] b1 = java.util.Arrays.copyOfRange(b, half, n);
+      double[] sumA = new double[high], sumB = new double[high];
+      for (int i = 0; i < high; i++) {
+         sumA[i] = a1[i] + (i < half ? a0[i] : 0);
+         sumB[i] = b1[i] + (i < half ? b0[i] : 0);
+      }
+      double[] z0 = karatsubaEqual(a0, b0);
+      double[] z2 = karatsubaEqual(a1, b1);
+      double[] z1 = karatsubaEqual(sumA, sumB);
+      double[] c = new double[2 * n - 1];
+      for (int i = 0; i < z0.length; i++) {
+         c[i] += z0[i];
+         z1[i] -= z0[i];
+      }
+      for (int i = 0; i < z2.length; i++) {
+         c[i + 2 * half] += z2[i];
+         z1[i] -= z2[i];
+      }
+      for (int i = 0; i < z1.length; i++) {
+         c[i + half] += z1[i];
+      }
+      return c;
+   }
+
+   /**
+   * FFT convolution of whole-number coefficients; every result is rounded to the nearest
+   * integer, which is exact when fftExact holds.
+   */
+   static double[] fft(double[] a, double[] b) {
+      int resultLength = a.length + b.length - 1;
+      int n = Integer.highestOneBit(resultLength);
+      if (n < resultLength) {
+         n <<= 1;
+      }
+      double[] re = new double[n], im = new double[n];
+      // pack a into the real part and b into the imaginary part, one forward transform for both
+      for (int i = 0; i < a.length; i++) {
+         re[i] = a[i];
+      }
+      for (int i = 0; i < b.length; i++) {
+         im[i] = b[i];
+      }
+      transform(re, im, false);
+      // product of the two spectra: A[k]*B[k] = (Z[k]^2 - conj(Z[n-k])^2) / 4i
+      double[] pr = new double[n], pi = new double[n];
+      for (int k = 0; k < n; k++) {
+         int j = (n - k) & (n - 1);
+         double zr = re[k], zi = im[k];
+         double wr = re[j], wi = -im[j];
+         double sr = zr * zr - zi * zi - (wr * wr - wi * wi);
+         double si = 2 * zr * zi - 2 * wr * wi;
+         // divide by 4i
+         pr[k] = si / 4;
+         pi[k] = -sr / 4;
+      }
+      transform(pr, pi, true);
+      double[] c = new double[resultLength];
+      for (int i = 0; i < resultLength; i++) {
+         c[i] = Math.rint(pr[i] / n);
+      }
+      return c;
+   }
+
+   /**
+   * In-place iterative radix-2 FFT.
+   */
+   private static void transform(double[] re, double[] im, boolean inverse) {
+      int n = re.length;
+      for (int i = 1, j = 0; i < n; i++) {
+         int bit = n >> 1;
+         for (; (j & bit) != 0; bit >>= 1) {
+            j ^= bit;
+         }
+         j ^= bit;
+         if (i < j) {
+            double t = re[i]; re[i] = re[j]; re[j] = t;
+            t = im[i]; im[i] = im[j]; im[j] = t;
+         }
+      }
+      double[] cos = new double[n / 2], sin = new double[n / 2];
+      for (int k = 0; k < n / 2; k++) {
+         double angle = 2 * Math.PI * k / n;
+         cos[k] = Math.cos(angle);
+         sin[k] = inverse ? Math.sin(angle) : -Math.sin(angle);
+      }
+      for (int len = 2; len <= n; len <<= 1) {
+         int halfLen = len >> 1, step = n / len;
+         for (int i = 0; i < n; i += len) {
+            for (int k = 0; k < halfLen; k++) {
+               double wr = cos[k * step], wi = sin[k * step];
+               int p = i + k, q = p + halfLen;
+               double xr = re[q] * wr - im[q] * wi;
+               double xi = re[q] * wi + im[q] * wr;
+               re[q] = re[p] - xr;
+               im[q] = im[p] - xi;
+               re[p] += xr;
+               im[p] += xi;
+            }
+         }
+      }
+   }
+
+   /**
+   * Converts a polynomial linked list to a dense coefficient array (index = degree).
+   *
+   * @param poly Polynomial (front of linked list)
+   * @param maxDegree Highest degree in the polynomial
+   * @return Dense coefficients
+   */
+   static double[] toDense(Node poly, int maxDegree) {
+      double[] c = new double[maxDegree + 1];
+      for (Node ptr = poly; ptr != null; ptr = ptr.next) {
+         c[ptr.term.degree] += ptr.term.coeff;
+      }
+      return c;
+   }
+
+   /**
+   * Converts dense coefficients back to a linked list in ascending order of degrees,
+   * skipping zero terms.
+   *
+   * @param c Dense coefficients
+   * @return Front of the polynomial linked list
+   */
+   static Node fromDense(double[] c) {
+      Node front = null;
+      for (int degree = c.length - 1; degree >= 0; degree--) {
+         float coeff = (float) c[degree];
+         if (coeff != 0) {
+            front = new Node(coeff, degree, front);
+         }
+      }
+      return front;
+   }
+}
@@ -0,0 +1,219 @@
+package poly;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sum and product of many polynomials at once, reduced as a balanced tree on a
+ * fork-join pool instead of a sequential fold.
+ * <ul>
+ * <li>Sums split the inputs in halves down to groups of LEAF_SIZE polynomials, which are
+ * merged with a k-way heap merge, so every term is touched O(log k) times.</li>
+ * <li>Products are combined in rounds, always pairing the polynomials with the fewest
+ * terms first, and the pairs of a round are multiplied in parallel.</li>
+ * </ul>
+ * Input polynomials are expected in ascending order of degrees, the form built by
+ * Polynomial.read, add and multiply. None of the input nodes are changed or reused.
+ *
+ * author: Kathan Patel, kdp118
+ */
+public class PolyReducer {
+
+   /**
+   * Number of polynomials merged with a single heap merge
+   */
+   static final int LEAF_SIZE = 64;
+
+   // prevent instantiation
+   private PolyReducer() { }
+
+   /**
+   * Returns the sum of all the polynomials.
+   *
+   * @param polys Input polynomials (fronts of linked lists), null entries are zero
+   * @param pool Pool on which the reduction runs
+   * @return A new polynomial which is the sum, null if it is zero
+   */
+   public static Node sumAll(List<Node> polys, ForkJoinPool pool) {
+      Node[] array = polys.toArray(new Node[0]);
+      if (array.length <= LEAF_SIZE) {
+         return heapMerge(array, 0, array.length);
+      }
+      return pool.invoke(new SumTask(array, 0, array.length));
+   }
+
+   /**
+   * Returns the product of all the polynomials.
+   *
+   * @param polys Input polynomials (fronts of linked lists), null entries are zero
+   * @param pool Pool on which the reduction runs
+   * @return A new polynomial which is the product, null if it is zero; the constant 1 if
+   * there are no polynomials
+   */
+   public static Node productAll(List<Node> polys, ForkJoinPool pool) {
+      if (polys.isEmpty()) {
+         return new Node(1, 0, null);
+      }
+      List<Sized> round = new ArrayList<Sized>(polys.size());
+      for (Node poly : polys) {
+         if (poly == null) {
+            return null;
+         }
+         round.add(new Sized(poly));
+      }
+      if (round.size() == 1) {
+         return Polynomial.add(round.get(0).poly, null);
+      }
+      while (round.size() > 1) {
+         round.sort((a, b) -> Integer.compare(a.terms, b.terms));
+         List<ProductTask> tasks = new ArrayList<ProductTask>(round.size() / 2);
+         for (int i = 0; i + 1 < round.size(); i += 2) {
+            tasks.add(new ProductTask(round.get(i).poly, round.get(i + 1).poly));
+         }
+         List<Sized> next = new ArrayList<Sized>(tasks.size() + 1);
+         if (round.size() % 2 == 1) {
+            next.add(round.get(round.size() - 1));
+         }
+         if (tasks.size() == 1) {
+            next.add(new Sized(PolyMultiplier.multiply(tasks.get(0).poly1, tasks.get(0).poly2)));
+         } else {
+            pool.invoke(ForkJoinTask.adapt(() -> {
+               ForkJoinTask.invokeAll(tasks);
+            }));
+            for (ProductTask task : tasks) {
+               next.add(new Sized(task.join()));
+            }
+         }
+         for (Sized s : next) {
+            if (s.poly == null) {
+               return null;
+            }
+         }
+         round = next;
+      }
+      return round.get(0).poly;
+   }
+
+   /**
+   * Merges polys[from, to) with a min-heap of list cursors keyed by degree. Equal degrees
+   * are added together and zero terms are dropped.
+   */
+   static Node heapMerge(Node[] polys, int from, int to) {
+      Node[] cursors = new Node[to - from];
+      int size = 0;
+      for (int i = from; i < to; i++) {
+         if (polys[i] != null) {
+            cursors[size++] = polys[i];
+         }
+      }
+      for (int i = size / 2 - 1; i >= 0; i--) {
+         siftDown(cursors, i, size);
+      }
+      Node front = null, last = null;
+      while (size > 0) {
+         int degree = cursors[0].term.degree;
+         float coeff = 0;
+         // pull every term of this degree off the heap
+         while (size > 0 && cursors[0].term.degree == degree) {
+            coeff += cursors[0].term.coeff;
+            cursors[0] = cursors[0].next;
+            if (cursors[0] == null) {
+               cursors[0] = cursors[--size];
+               cursors[size] = null;
+            }
+            siftDown(cursors, 0, size);
+         }
+         if (coeff != 0) {
+            Node ptr = new Node(coeff, degree, null);
+            if (last != null) {
+               last.next = ptr;
+            } else {
+               front = ptr;
+            }
+            last = ptr;
+         }
+      }
+      return front;
+   }
+
+   private static void siftDown(Node[] heap, int i, int size) {
+      Node item = heap[i];
+      if (item == null) {
+         return;
+      }
+      while (true) {
+         int child = 2 * i + 1;
+         if (child >= size) {
+            break;
+         }
+         if (child + 1 < size && heap[child + 1].term.degree < heap[child].term.degree) {
+            child++;
+         }
+         if (heap[child].term.degree >= item.term.degree) {
+            break;
+         }
+         heap[i] = heap[child];
+         i = child;
+      }
+      heap[i] = item;
+   }
+
+   private static class SumTask extends RecursiveTask<Node> {
+      private static final long serialVersionUID = 1L;
+      private final Node[] polys;
+      private final int from, to;
+
+      SumTask(Node[] polys, int from, int to) {
+         this.polys = polys;
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      protected Node compute() {
+         if (to - from <= LEAF_SIZE) {
+            return heapMerge(polys, from, to);
+         }
+         int mid = (from + to) >>> 1;
+         SumTask left = new SumTask(polys, from, mid);
+         left.fork();
+         Node right = new SumTask(polys, mid, to).compute();
+         return Polynomial.add(left.join(), right);
+      }
+   }
+
+   private static class ProductTask extends RecursiveTask<Node> {
+      private static final long serialVersionUID = 1L;
+      private final Node poly1, poly2;
+
+      ProductTask(Node poly1, Node poly2) {
+         this.poly1 = poly1;
+         this.poly2 = poly2;
+      }
+
+      @Override
+      protected Node compute() {
+         return PolyMultiplier.multiply(poly1, poly2);
+      }
+   }
+
+   /**
+   * Polynomial with its term count, for ordering products
+   */
+   private static class Sized {
+      final Node poly;
+      final int terms;
+
+      Sized(Node poly) {
+         this.poly = poly;
+         int n = 0;
+         for (Node ptr = poly; ptr != null; ptr = ptr.next) {
+            n++;
+         }
+         terms = n;
+      }
+   }
+}
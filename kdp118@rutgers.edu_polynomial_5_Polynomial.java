@@ -1,7 +1,9 @@
 package poly;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 
 /**
 * author: Kathan Patel, kdp118
@@ -210,47 +212,43 @@ for(int f=0; f<10000;f++) {
    * @param poly2 Second input polynomial (front of polynomial linked list)
    * @return A new polynomial which is the product of the input polynomials - the returned node
    * is the front of the result polynomial
+   * @see PolyMultiplier
    */
    public static Node multiply(Node poly1, Node poly2) {
        /** COMPLETE THIS METHOD **/
       
-       Node front = null, last = null, product = null;
-       if(poly1 == null || poly2 == null) {
-    	   
-           return front;
-           
-       }
-       for(Node ptr2 = poly2; ptr2 != null; ptr2 = ptr2.next) {
-           for(Node ptr1 = poly1; ptr1 != null; ptr1 = ptr1.next) {
-               
-        	   Node ptr = new Node(ptr1.term.coeff * ptr2.term.coeff, ptr1.term.degree + ptr2.term.degree, null);
-        	   
-           if(last != null){
-               
-        	   last.next = ptr;
-        	   
-           }else{
-               
-        	   front = ptr;
-        	   
-           }
-           	   last = ptr;
-           }
-           
-           product = add(product, front);
-           front = null;
-           last = null;
-           
-       }
-       
-       return product;
+       // schoolbook, Karatsuba, FFT or sparse depending on size and density
+       return PolyMultiplier.multiply(poly1, poly2);
    }
+   /**
+   * Returns the sum of all the given polynomials - DOES NOT change any of the inputs.
+   * The reduction is a balanced tree run on the common fork-join pool.
+   *
+   * @param polys Input polynomials (fronts of polynomial linked lists)
+   * @return A new polynomial which is the sum of the input polynomials
+   */
+   public static Node sumAll(List<Node> polys) {
+       return PolyReducer.sumAll(polys, ForkJoinPool.commonPool());
+   }
+
+   /**
+   * Returns the product of all the given polynomials - DOES NOT change any of the inputs.
+   * Polynomials with fewer terms are multiplied together first, on the common fork-join pool.
+   *
+   * @param polys Input polynomials (fronts of polynomial linked lists)
+   * @return A new polynomial which is the product of the input polynomials
+   */
+   public static Node productAll(List<Node> polys) {
+       return PolyReducer.productAll(polys, ForkJoinPool.commonPool());
+   }
+
    /**
    * Evaluates a polynomial at a given value.
    *
    * @param poly Polynomial (front of linked list) to be evaluated
    * @param x Value at which evaluation is to be done
    * @return Value of polynomial p at x
+   * @see CompiledPolynomial for evaluating the same polynomial at many points
    */
    public static float evaluate(Node poly, float x) {
      
@@ -273,16 +271,14 @@ for(int f=0; f<10000;f++) {
    * @return String representation, in desclasting order of degrees
    */
    public static String toString(Node poly) {
-       if (poly == null) {
-           return "0";
-       }
-      
-       String retval = poly.term.toString();
-       for (Node current = poly.next ; current != null ;
-       current = current.next) {
-           retval = current.term.toString() + " + " + retval;
+       StringBuilder retval = new StringBuilder();
+       try {
+           PolynomialWriter.write(poly, retval);
+       } catch (IOException e) {
+           // StringBuilder does not throw
+           throw new IllegalStateException(e);
        }
-       return retval;
+       return retval.toString();
    }  
 }
 
@@ -0,0 +1,239 @@
+package poly;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bulk reader for the polynomial storage format read by Polynomial.read:
+ * <pre>
+ * &lt;coeff&gt; &lt;degree&gt;
+ * &lt;coeff&gt; &lt;degree&gt;
+ * ...
+ * </pre>
+ * Numbers are parsed by hand straight out of a byte buffer into a PackedPolynomial, in file
+ * order. Degrees are checked to be strictly descending as they are read.
+ *
+ * author: Kathan Patel, kdp118
+ */
+public class PolynomialReader {
+
+   /**
+   * Size of the buffer used when reading from a channel
+   */
+   static final int BUFFER_SIZE = 1 << 20;
+
+   /**
+   * Size of each window when a file is memory-mapped
+   */
+   static final long MAP_WINDOW = 1L << 28;
+
+   private static final float[] FLOAT_POW10 = {
+      1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+   };
+
+   private final PackedPolynomial poly;
+   private int lastDegree = Integer.MAX_VALUE;
+
+   private PolynomialReader(int capacity) {
+      poly = new PackedPolynomial(capacity);
+   }
+
+   /**
+   * Reads a polynomial from a channel.
+   *
+   * @param channel Channel from which the polynomial is to be read
+   * @return Terms of the polynomial in file order
+   * @throws IOException If there is any input error, a malformed number, or degrees that
+   * are not in descending order
+   */
+   public static PackedPolynomial read(ReadableByteChannel channel)
+   throws IOException {
+      PolynomialReader reader = new PolynomialReader(1024);
+      ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+      boolean eof = false;
+      while (!eof) {
+         eof = channel.read(buf) < 0;
+         buf.flip();
+         int consumed = reader.parse(buf, eof);
+         buf.position(consumed);
+         if (!eof && consumed == 0 && buf.limit() == buf.capacity()) {
+            throw new IOException("token longer than " + BUFFER_SIZE + " bytes");
+         }
+         buf.compact();
+      }
+      return reader.poly;
+   }
+
+   /**
+   * Reads a polynomial from a file by memory-mapping it.
+   *
+   * @param file File from which the polynomial is to be read
+   * @return Terms of the polynomial in file order
+   * @throws IOException If there is any input error, a malformed number, or degrees that
+   * are not in descending order
+   */
+   public static PackedPolynomial read(Path file)
+   throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+         long size = channel.size();
+         // a term line is at least 4 bytes ("1 0\n")
+         PolynomialReader reader = new PolynomialReader((int) Math.min(size / 4 + 1, 1 << 24));
+         long offset = 0;
+         while (offset < size) {
+            long length = Math.min(MAP_WINDOW, size - offset);
+            boolean eof = offset + length == size;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            int consumed = reader.parse(window, eof);
+            if (consumed == 0 && !eof) {
+               throw new IOException("token longer than " + MAP_WINDOW + " bytes");
+            }
+            offset += eof ? length : consumed;
+         }
+         return reader.poly;
+      }
+   }
+
+   /**
+   * Parses as many complete terms as the buffer holds.
+   *
+   * @param buf Bytes to parse, from position to limit
+   * @param eof Whether the buffer ends at the end of input
+   * @return Offset (relative to the buffer start) up to which input was consumed; the rest
+   * holds an incomplete term that must be parsed again with more bytes
+   */
+   private int parse(ByteBuffer buf, boolean eof)
+   throws IOException {
+      int pos = buf.position(), limit = buf.limit();
+      int consumed = pos;
+      while (true) {
+         int coeffStart = skipSpace(buf, pos, limit);
+         if (coeffStart == limit) {
+            return limit;
+         }
+         int coeffEnd = tokenEnd(buf, coeffStart, limit);
+         int degreeStart = skipSpace(buf, coeffEnd, limit);
+         int degreeEnd = degreeStart == limit ? limit : tokenEnd(buf, degreeStart, limit);
+         if (degreeEnd == limit && !eof) {
+            // the term may continue in the next buffer
+            return consumed;
+         }
+         if (degreeStart == degreeEnd) {
+            throw new IOException("missing degree after term " + poly.size());
+         }
+         float coeff = parseFloat(buf, coeffStart, coeffEnd);
+         int degree = parseInt(buf, degreeStart, degreeEnd);
+         if (degree >= lastDegree) {
+            throw new IOException("degree " + degree + " of term " + poly.size()
+                  + " is not below previous degree " + lastDegree);
+         }
+         lastDegree = degree;
+         poly.append(coeff, degree);
+         pos = consumed = degreeEnd;
+      }
+   }
+
+   private static int skipSpace(ByteBuffer buf, int pos, int limit) {
+      while (pos < limit && buf.get(pos) <= ' ') {
+         pos++;
+      }
+      return pos;
+   }
+
+   private static int tokenEnd(ByteBuffer buf, int pos, int limit) {
+      while (pos < limit && buf.get(pos) > ' ') {
+         pos++;
+      }
+      return pos;
+   }
+
+   private int parseInt(ByteBuffer buf, int start, int end)
+   throws IOException {
+      int pos = start;
+      boolean negative = false;
+      if (buf.get(pos) == '-' || buf.get(pos) == '+') {
+         negative = buf.get(pos++) == '-';
+      }
+      if (pos == end) {
+         throw malformed(buf, start, end);
+      }
+      long value = 0;
+      for (; pos < end; pos++) {
+         int digit = buf.get(pos) - '0';
+         if (digit < 0 || digit > 9) {
+            throw malformed(buf, start, end);
+         }
+         value = value * 10 + digit;
+         if (value > Integer.MAX_VALUE + 1L) {
+            throw malformed(buf, start, end);
+         }
+      }
+      value = negative ? -value : value;
+      if (value > Integer.MAX_VALUE) {
+         throw malformed(buf, start, end);
+      }
+      return (int) value;
+   }
+
+   /**
+   * Parses plain decimals (optional sign, digits, optional fraction) with a float-exact fast
+   * path: up to 7 significant digits and a power of ten of at most 10 are computed exactly
+   * rounded in float arithmetic. Anything else (exponents, long mantissas) falls back to
+   * Float.parseFloat.
+   */
+   private float parseFloat(ByteBuffer buf, int start, int end)
+   throws IOException {
+      int pos = start;
+      boolean negative = false;
+      if (buf.get(pos) == '-' || buf.get(pos) == '+') {
+         negative = buf.get(pos++) == '-';
+      }
+      long mantissa = 0;
+      int digits = 0, fraction = 0;
+      boolean dot = false, sawDigit = false, simple = true;
+      for (; pos < end && simple; pos++) {
+         byte b = buf.get(pos);
+         if (b >= '0' && b <= '9') {
+            if (mantissa != 0 || b != '0') {
+               digits++;
+            }
+            mantissa = mantissa * 10 + (b - '0');
+            sawDigit = true;
+            if (dot) {
+               fraction++;
+            }
+            simple = digits <= 7;
+         } else if (b == '.' && !dot) {
+            dot = true;
+         } else {
+            simple = false;
+         }
+      }
+      if (simple && sawDigit && fraction <= 10) {
+         float value = fraction == 0 ? (float) mantissa : (float) mantissa / FLOAT_POW10[fraction];
+         return negative ? -value : value;
+      }
+      byte[] bytes = new byte[end - start];
+      for (int i = 0; i < bytes.length; i++) {
+         bytes[i] = buf.get(start + i);
+      }
+      try {
+         return Float.parseFloat(new String(bytes, StandardCharsets.US_ASCII));
+      } catch (NumberFormatException e) {
+         throw malformed(buf, start, end);
+      }
+   }
+
+   private IOException malformed(ByteBuffer buf, int start, int end) {
+      StringBuilder token = new StringBuilder();
+      for (int i = start; i < end && i < start + 40; i++) {
+         token.append((char) buf.get(i));
+      }
+      return new IOException("malformed number \"" + token + "\" in term " + poly.size());
+   }
+}
@@ -0,0 +1,117 @@
+package poly;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Writes polynomials out without building intermediate strings: the text form produced
+ * by Polynomial.toString, written in one pass to any Appendable, and a compact binary form.
+ * <p>
+ * The binary form is a 4-byte magic number, a 4-byte term count, then one 4-byte float
+ * coefficient and one 4-byte int degree per term, all big-endian, in list order.
+ *
+ * author: Kathan Patel, kdp118
+ */
+public class PolynomialWriter {
+
+   /**
+   * First four bytes of the binary form ("POLY")
+   */
+   static final int MAGIC = 0x504f4c59;
+
+   // prevent instantiation
+   private PolynomialWriter() { }
+
+   /**
+   * Appends the string representation of a polynomial, the same text as Polynomial.toString:
+   * terms from the last node to the front, separated by " + ".
+   *
+   * @param poly Polynomial (front of linked list)
+   * @param out Destination (StringBuilder, Writer, ...)
+   * @throws IOException If out throws one
+   */
+   public static void write(Node poly, Appendable out)
+   throws IOException {
+      if (poly == null) {
+         out.append('0');
+         return;
+      }
+      // the list is singly linked, so gather the terms to write them back to front
+      ArrayList<Term> terms = new ArrayList<Term>();
+      for (Node current = poly; current != null; current = current.next) {
+         terms.add(current.term);
+      }
+      out.append(terms.get(terms.size() - 1).toString());
+      for (int i = terms.size() - 2; i >= 0; i--) {
+         out.append(" + ").append(terms.get(i).toString());
+      }
+   }
+
+   /**
+   * Writes a polynomial in binary form.
+   *
+   * @param poly Polynomial (front of linked list)
+   * @param out Destination stream, not closed
+   * @throws IOException If there is any error writing
+   */
+   public static void writeBinary(Node poly, OutputStream out)
+   throws IOException {
+      int count = 0;
+      for (Node ptr = poly; ptr != null; ptr = ptr.next) {
+         count++;
+      }
+      DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+      data.writeInt(MAGIC);
+      data.writeInt(count);
+      for (Node ptr = poly; ptr != null; ptr = ptr.next) {
+         data.writeFloat(ptr.term.coeff);
+         data.writeInt(ptr.term.degree);
+      }
+      data.flush();
+   }
+
+   /**
+   * Reads a polynomial written by writeBinary.
+   *
+   * @param in Source stream, not closed
+   * @return The polynomial linked list (front node), in the order it was written
+   * @throws IOException If there is any error reading, or the data is not in binary form
+   */
+   public static Node readBinary(InputStream in)
+   throws IOException {
+      // no read-ahead past the last term, the stream may hold more data after it
+      DataInputStream data = new DataInputStream(in);
+      if (data.readInt() != MAGIC) {
+         throw new IOException("not a binary polynomial");
+      }
+      int count = data.readInt();
+      if (count < 0) {
+         throw new IOException("negative term count " + count);
+      }
+      Node front = null, last = null;
+      byte[] chunk = new byte[8 * Math.min(count, 8192)];
+      ByteBuffer buf = ByteBuffer.wrap(chunk);
+      for (int read = 0; read < count; ) {
+         int n = Math.min(count - read, chunk.length / 8);
+         data.readFully(chunk, 0, 8 * n);
+         buf.clear();
+         for (int i = 0; i < n; i++) {
+            Node ptr = new Node(buf.getFloat(), buf.getInt(), null);
+            if (last != null) {
+               last.next = ptr;
+            } else {
+               front = ptr;
+            }
+            last = ptr;
+         }
+         read += n;
+      }
+      return front;
+   }
+}